@@ -0,0 +1,56 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-element costs of functions used by parallelism benchmarks, in {@link Blackhole#consumeCPU} tokens.
+ * Values are indices of elements, from {@code 0} to {@code size - 1}.
+ */
+public enum CostProfile {
+    /**
+     * No work besides the operation itself.
+     */
+    CHEAP {
+        @Override
+        long tokens(int value, int size) {
+            return 0;
+        }
+    },
+    /**
+     * The same amount of work for every element.
+     */
+    UNIFORM {
+        @Override
+        long tokens(int value, int size) {
+            return 64;
+        }
+    },
+    /**
+     * The last eighth of elements is 64 times more expensive, so a chunk covering it gets most of the work.
+     */
+    SKEWED {
+        @Override
+        long tokens(int value, int size) {
+            return value >= size - size / 8 ? 4096 : 64;
+        }
+    },
+    /**
+     * Every 1024-th element is 1024 times more expensive.
+     */
+    SPIKES {
+        @Override
+        long tokens(int value, int size) {
+            return value % 1024 == 0 ? 65536 : 64;
+        }
+    };
+
+    abstract long tokens(int value, int size);
+
+    public int apply(int value, int size) {
+        long tokens = tokens(value, size);
+        if (tokens > 0) {
+            Blackhole.consumeCPU(tokens);
+        }
+        return value;
+    }
+}
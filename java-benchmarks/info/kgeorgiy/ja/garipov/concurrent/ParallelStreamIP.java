@@ -0,0 +1,77 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Baseline {@link AdvancedIP} over JDK parallel streams.
+ * Streams run in a fork-join pool with parallelism equal to the requested number of threads.
+ */
+public class ParallelStreamIP implements AdvancedIP, AutoCloseable {
+    private final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    private <R> R run(int threads, Callable<R> operation) throws InterruptedException {
+        try {
+            return pools.computeIfAbsent(threads, ForkJoinPool::new).submit(operation).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public <T> T maximum(int threads, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().<T>map(Function.identity()).max(comparator).orElse(null));
+    }
+
+    @Override
+    public <T> T minimum(int threads, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().<T>map(Function.identity()).min(comparator).orElse(null));
+    }
+
+    @Override
+    public <T> boolean all(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().allMatch(predicate));
+    }
+
+    @Override
+    public <T> boolean any(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().anyMatch(predicate));
+    }
+
+    @Override
+    public String join(int threads, List<?> values) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().map(Object::toString).collect(Collectors.joining()));
+    }
+
+    @Override
+    public <T> List<T> filter(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().filter(predicate).collect(Collectors.toList()));
+    }
+
+    @Override
+    public <T, U> List<U> map(int threads, List<? extends T> values, Function<? super T, ? extends U> f) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().<U>map(f).collect(Collectors.toList()));
+    }
+
+    @Override
+    public <T> T reduce(int threads, List<T> values, Monoid<T> monoid) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().reduce(monoid.getIdentity(), monoid.getOperator()));
+    }
+
+    @Override
+    public <T, R> R mapReduce(int threads, List<T> values, Function<T, R> lift, Monoid<R> monoid) throws InterruptedException {
+        return run(threads, () -> values.parallelStream().map(lift).reduce(monoid.getIdentity(), monoid.getOperator()));
+    }
+
+    @Override
+    public void close() {
+        pools.values().forEach(ForkJoinPool::shutdown);
+    }
+}
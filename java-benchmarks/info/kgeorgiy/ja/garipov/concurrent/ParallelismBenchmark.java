@@ -0,0 +1,146 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Throughput of every {@link AdvancedIP} operation of {@link IterativeParallelism} with its own threads,
+ * with a {@link ParallelMapperImpl} and in adaptive mode, compared to parallel streams.
+ * <p>
+ * {@code elements} counter is reported in elements per second, so scores of different sizes
+ * and numbers of threads are comparable and a scaling regression shows up as a drop of the counter.
+ * Cost profile applies to functions, predicates and comparators, so it does not change {@code join} and {@code reduce}.
+ * The whole matrix is large: select scenarios with {@code -p}, for example {@code -p size=100000000 -p threads=8}.
+ * The largest size needs several gigabytes of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParallelismBenchmark {
+    public enum Implementation {
+        THREADS, MAPPER, ADAPTIVE, STREAM
+    }
+
+    @Param({"THREADS", "MAPPER", "ADAPTIVE", "STREAM"})
+    public Implementation implementation;
+
+    @Param({"10", "1000", "100000", "10000000", "100000000"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"CHEAP", "UNIFORM", "SKEWED", "SPIKES"})
+    public CostProfile profile;
+
+    private final static AdvancedIP.Monoid<Integer> SUM = new AdvancedIP.Monoid<>(0, Integer::sum);
+
+    private List<Integer> values;
+    private Function<Integer, Integer> f;
+    private Comparator<Integer> comparator;
+    private AdvancedIP ip;
+    private AutoCloseable resource;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Elements {
+        public long elements;
+    }
+
+    @Setup
+    public void setup() {
+        values = IntStream.range(0, size).boxed().collect(Collectors.toCollection(() -> new ArrayList<>(size)));
+        f = value -> profile.apply(value, size);
+        comparator = (left, right) -> Integer.compare(f.apply(left), f.apply(right));
+        switch (implementation) {
+            case THREADS:
+                ip = new IterativeParallelism();
+                break;
+            case MAPPER:
+                ParallelMapperImpl mapper = new ParallelMapperImpl(threads);
+                ip = new IterativeParallelism(mapper);
+                resource = mapper;
+                break;
+            case ADAPTIVE:
+                ip = IterativeParallelism.adaptive();
+                break;
+            case STREAM:
+                ParallelStreamIP streamIP = new ParallelStreamIP();
+                ip = streamIP;
+                resource = streamIP;
+                break;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (resource != null) {
+            resource.close();
+        }
+    }
+
+    @Benchmark
+    public Integer maximum(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.maximum(threads, values, comparator);
+    }
+
+    @Benchmark
+    public Integer minimum(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.minimum(threads, values, comparator);
+    }
+
+    @Benchmark
+    public boolean all(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.all(threads, values, value -> f.apply(value) >= 0);
+    }
+
+    @Benchmark
+    public boolean any(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.any(threads, values, value -> f.apply(value) < 0);
+    }
+
+    @Benchmark
+    public String join(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.join(threads, values);
+    }
+
+    @Benchmark
+    public List<Integer> filter(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.filter(threads, values, value -> (f.apply(value) & 1) == 0);
+    }
+
+    @Benchmark
+    public List<Integer> map(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.map(threads, values, f);
+    }
+
+    @Benchmark
+    public Integer reduce(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.reduce(threads, values, SUM);
+    }
+
+    @Benchmark
+    public Integer mapReduce(Elements elements) throws InterruptedException {
+        elements.elements += size;
+        return ip.mapReduce(threads, values, f, SUM);
+    }
+}
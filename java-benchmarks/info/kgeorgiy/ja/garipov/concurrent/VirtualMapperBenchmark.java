@@ -0,0 +1,83 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Throughput of map calls of a {@link ParallelMapperImpl#virtual virtual} mapper.
+ * <p>
+ * {@code threads} counter is reported in threads started per second. A call that starts more threads
+ * than its concurrency limit, or a streaming call that starts more threads than its buffer holds, fails the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VirtualMapperBenchmark {
+    @Param({"0", "16"})
+    public int concurrency;
+
+    @Param({"200", "10000"})
+    public int size;
+
+    @Param({"8", "64"})
+    public int bufferSize;
+
+    private ParallelMapperImpl mapper;
+    private List<Integer> values;
+    private Function<Integer, Integer> f;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Threads {
+        public long threads;
+    }
+
+    @Setup
+    public void setup() {
+        mapper = ParallelMapperImpl.virtual(concurrency);
+        values = IntStream.range(0, size).boxed().collect(Collectors.toCollection(() -> new ArrayList<>(size)));
+        f = value -> CostProfile.UNIFORM.apply(value, size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mapper.close();
+    }
+
+    @Benchmark
+    public List<Integer> map(Threads threads) throws InterruptedException {
+        long started = mapper.getMetrics().getThreadsStarted();
+        List<Integer> results = mapper.map(f, values);
+        check(threads, started, Math.min(size, mapper.getMaxConcurrency()));
+        return results;
+    }
+
+    @Benchmark
+    public long mapStreaming(Threads threads) throws InterruptedException {
+        long started = mapper.getMetrics().getThreadsStarted();
+        ResultStream<Integer> results = mapper.mapStreaming(f, values, bufferSize, true);
+        long sum = 0;
+        while (results.hasNext()) {
+            sum += results.next();
+        }
+        check(threads, started, Math.min(size, Math.min(mapper.getMaxConcurrency(), bufferSize)));
+        return sum;
+    }
+
+    private void check(Threads threads, long before, int limit) {
+        long started = mapper.getMetrics().getThreadsStarted() - before;
+        if (started > limit) {
+            throw new IllegalStateException("Call started " + started + " threads, at most " + limit + " expected");
+        }
+        threads.threads += started;
+    }
+}
@@ -0,0 +1,66 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing throughput of a single file for every algorithm.
+ * <p>
+ * {@code bytes} counter of {@link #throughput} is reported in bytes per second.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HashBenchmark {
+    @Param({"pjw", "crc32c", "xxhash64", "sha256"})
+    public String algorithmName;
+
+    @Param({"4096", "1048576", "67108864"})
+    public long fileSize;
+
+    private HashAlgorithm algorithm;
+    private Path directory;
+    private Path file;
+    private Path emptyFile;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        algorithm = HashAlgorithms.forName(algorithmName);
+        directory = Files.createTempDirectory("hash-benchmark");
+        file = directory.resolve("file");
+        SyntheticTree.writeFile(file, fileSize, new Random(fileSize));
+        emptyFile = Files.createFile(directory.resolve("empty"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticTree.delete(directory);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public byte[] throughput(Bytes bytes) throws IOException {
+        bytes.bytes += fileSize;
+        return HashWritingFileVisitor.calculateHash(file, algorithm);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] perFileOverhead() throws IOException {
+        return HashWritingFileVisitor.calculateHash(emptyFile, algorithm);
+    }
+}
@@ -0,0 +1,101 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * Shapes of generated file trees used by walk benchmarks.
+ */
+public enum SyntheticTree {
+    /**
+     * Many files of up to 1 KiB spread over a hundred directories.
+     */
+    TINY {
+        @Override
+        void fill(Path root, Random random) throws IOException {
+            for (int i = 0; i < 10_000; i++) {
+                Path dir = Files.createDirectories(root.resolve("d" + i % 100));
+                writeFile(dir.resolve("f" + i), random.nextInt(1024), random);
+            }
+        }
+    },
+    /**
+     * A few files of 128 MiB.
+     */
+    HUGE {
+        @Override
+        void fill(Path root, Random random) throws IOException {
+            for (int i = 0; i < 4; i++) {
+                writeFile(root.resolve("f" + i), 128L << 20, random);
+            }
+        }
+    },
+    /**
+     * A chain of nested directories with a few files on every level.
+     */
+    DEEP {
+        @Override
+        void fill(Path root, Random random) throws IOException {
+            Path dir = root;
+            for (int level = 0; level < 200; level++) {
+                dir = Files.createDirectory(dir.resolve("l" + level));
+                for (int i = 0; i < 10; i++) {
+                    writeFile(dir.resolve("f" + i), 4096, random);
+                }
+            }
+        }
+    },
+    /**
+     * A single directory with many subdirectories.
+     */
+    WIDE {
+        @Override
+        void fill(Path root, Random random) throws IOException {
+            for (int i = 0; i < 1000; i++) {
+                Path dir = Files.createDirectory(root.resolve("d" + i));
+                for (int j = 0; j < 10; j++) {
+                    writeFile(dir.resolve("f" + j), 4096, random);
+                }
+            }
+        }
+    };
+
+    private static final long SEED = 2021;
+
+    abstract void fill(Path root, Random random) throws IOException;
+
+    public Path create(Path parent) throws IOException {
+        Path root = Files.createTempDirectory(parent, name().toLowerCase());
+        fill(root, new Random(SEED));
+        return root;
+    }
+
+    static void writeFile(Path file, long size, Random random) throws IOException {
+        byte[] block = new byte[(int) Math.min(size, 1 << 20)];
+        try (OutputStream output = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                output.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+    }
+
+    public static void delete(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
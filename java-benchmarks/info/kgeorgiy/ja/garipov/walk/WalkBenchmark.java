@@ -0,0 +1,59 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link RecursiveWalk} time over generated trees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class WalkBenchmark {
+    @Param({"TINY", "HUGE", "DEEP", "WIDE"})
+    public SyntheticTree shape;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"0", "4"})
+    public int traversalThreads;
+
+    private Path directory;
+    private Path input;
+    private Path output;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("walk-benchmark");
+        Path root = shape.create(directory);
+        input = Files.writeString(directory.resolve("input.txt"), root.toString());
+        output = directory.resolve("output.txt");
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteOutput() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticTree.delete(directory);
+    }
+
+    @Benchmark
+    public void walk() {
+        String[] args = traversalThreads == 0
+                ? new String[]{input.toString(), output.toString(), Integer.toString(threads)}
+                : new String[]{"-traversal", Integer.toString(traversalThreads),
+                input.toString(), output.toString(), Integer.toString(threads)};
+        Walker.walk(args, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,27 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * {@link ParallelMapper} that can return results without blocking the caller.
+ */
+public interface AsyncParallelMapper extends ParallelMapper {
+    /**
+     * Maps {@code args} in parallel and completes returned future with the list of results,
+     * or exceptionally with the first thrown exception. The first failure, as well as cancellation
+     * of the returned future, drops elements that are not started yet.
+     */
+    <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args);
+
+    /**
+     * Maps {@code args} in parallel and delivers results through a stream, either in order of {@code args}
+     * or in order of completion. At most {@code bufferSize} results are computed ahead of the consumer:
+     * elements beyond that are not started until previous results are taken.
+     */
+    <T, R> ResultStream<R> mapStreaming(Function<? super T, ? extends R> f, List<? extends T> args,
+                                        int bufferSize, boolean ordered);
+}
@@ -0,0 +1,32 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+/**
+ * Chooses number of threads for an operation from its size and recently observed time per element.
+ * Each thread should get at least {@link #MIN_THREAD_NANOS} of work, otherwise handing work over to
+ * other threads costs more than it saves. One thread means that operation should run sequentially.
+ * <p>
+ * Observations are averaged exponentially. Concurrent updates may be lost, which only makes the estimate slower.
+ */
+class CostModel {
+    private final static long MIN_THREAD_NANOS = 50_000;
+    private final static double INITIAL_NANOS_PER_ELEMENT = 100;
+    private final static double SMOOTHING = 0.2;
+    private volatile double nanosPerElement = INITIAL_NANOS_PER_ELEMENT;
+
+    public int threads(int requested, int size) {
+        double work = size * nanosPerElement;
+        return (int) Math.max(1, Math.min(requested, work / MIN_THREAD_NANOS));
+    }
+
+    public void record(int size, int threads, long nanos) {
+        if (size == 0) {
+            return;
+        }
+        double observed = (double) nanos * threads / size;
+        nanosPerElement = nanosPerElement + SMOOTHING * (observed - nanosPerElement);
+    }
+
+    public double getNanosPerElement() {
+        return nanosPerElement;
+    }
+}
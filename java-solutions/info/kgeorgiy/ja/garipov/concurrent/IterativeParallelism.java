@@ -4,21 +4,84 @@ import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class IterativeParallelism implements AdvancedIP {
 
     private final ParallelMapper mapper;
+    private final int chunksPerThread;
+    private final ThreadFactory threadFactory;
+    private final CostModel costModel;
 
     public IterativeParallelism() {
-        mapper = null;
+        this(null, 1, Thread::new);
     }
 
     public IterativeParallelism(ParallelMapper mapper) {
+        this(mapper, 1);
+    }
+
+    /**
+     * Creates instance that splits values into {@code chunksPerThread} chunks per thread.
+     * Chunks are handed out to threads one by one, so a thread that finished its chunk
+     * takes the next one instead of waiting for a slow neighbour.
+     */
+    public IterativeParallelism(ParallelMapper mapper, int chunksPerThread) {
+        this(mapper, chunksPerThread, Thread::new);
+    }
+
+    /**
+     * Creates instance without mapper that runs chunks in threads created by {@code threadFactory},
+     * for example {@link VirtualThreads#factory()} for blocking functions.
+     */
+    public static IterativeParallelism withThreadFactory(ThreadFactory threadFactory, int chunksPerThread) {
+        return new IterativeParallelism(null, chunksPerThread, threadFactory);
+    }
+
+    /**
+     * Creates instance that runs operations on a pool of daemon workers, one per processor,
+     * shared by all adaptive instances in the JVM.
+     * Number of threads passed to operations is an upper bound: actual number is chosen from size of values
+     * and recently observed time per element, and small operations run sequentially in the calling thread.
+     * Operations called from functions that already run on the pool are run sequentially as well,
+     * so that a worker never waits for other workers of the same pool.
+     */
+    public static IterativeParallelism adaptive() {
+        return new IterativeParallelism(SharedPool.MAPPER, 1, null, new CostModel());
+    }
+
+    private IterativeParallelism(ParallelMapper mapper, int chunksPerThread, ThreadFactory threadFactory) {
+        this(mapper, chunksPerThread, threadFactory, null);
+    }
+
+    private IterativeParallelism(ParallelMapper mapper, int chunksPerThread, ThreadFactory threadFactory,
+                                 CostModel costModel) {
+        if (chunksPerThread < 1) {
+            throw new IllegalArgumentException("Number of chunks per thread should be greater or equal to 1");
+        }
         this.mapper = mapper;
+        this.chunksPerThread = chunksPerThread;
+        this.threadFactory = threadFactory;
+        this.costModel = costModel;
+    }
+
+    private static class SharedPool {
+        private final static ParallelMapperImpl MAPPER = ParallelMapperImpl.daemon(Runtime.getRuntime().availableProcessors());
+    }
+
+    private int getChunksCount(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be greater or equal to 1");
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (long) threads * chunksPerThread);
     }
 
     private <T> int getActualThreadsCount(int threads, List<T> values) {
@@ -27,15 +90,23 @@ public class IterativeParallelism implements AdvancedIP {
     }
 
     public <T> List<Stream<? extends T>> buildStreams(int threads, List<T> values) {
+        return buildChunks(threads, values).stream().<Stream<? extends T>>map(List::stream).collect(Collectors.toList());
+    }
+
+    private <T> List<List<T>> buildChunks(int threads, List<T> values) {
         if (threads < 1) {
             throw new IllegalArgumentException("Number of threads should be greater or equal to 1");
         }
+        List<List<T>> chunkList = new ArrayList<>();
+        if (values.isEmpty()) {
+            return chunkList;
+        }
         threads = getActualThreadsCount(threads, values);
         int streamSize = values.size() / threads;
         int left, right = 0;
         int additionalElements = 0;
-        List<Stream<? extends T>> streamList = new ArrayList<>();
         int mod = (values.size() % threads);
+        Iterator<T> iterator = values instanceof RandomAccess ? null : values.iterator();
         while (true) {
             left = right;
             right = left + streamSize + ((additionalElements < mod) ? 1 : 0);
@@ -45,10 +116,21 @@ public class IterativeParallelism implements AdvancedIP {
             if (mod != 0) {
                 additionalElements++;
             }
-            List<T> subList = values.subList(left, right);
-            streamList.add(subList.stream());
+            chunkList.add(iterator == null ? values.subList(left, right) : copyChunk(iterator, right - left));
         }
-        return streamList;
+        return chunkList;
+    }
+
+    /**
+     * Sublists of a list without random access are iterated from the head,
+     * so such a list is copied into chunks in a single pass instead.
+     */
+    private static <T> List<T> copyChunk(Iterator<T> iterator, int size) {
+        List<T> chunk = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            chunk.add(iterator.next());
+        }
+        return chunk;
     }
 
     private <T, R> R monoidOperation(int threads, List<T> values, Function<T, R> lift, Monoid<R> monoid) throws InterruptedException {
@@ -74,6 +156,42 @@ public class IterativeParallelism implements AdvancedIP {
                 monoid);
     }
 
+    /**
+     * Reduces values of any {@link Iterable} source, see {@link #mapReduce(int, Spliterator, Function, Monoid)}.
+     */
+    public <T> T reduce(int threads, Iterable<? extends T> values, Monoid<T> monoid) throws InterruptedException {
+        return mapReduce(threads, values.spliterator(), Function.identity(), monoid);
+    }
+
+    public <T> T reduce(int threads, Stream<? extends T> values, Monoid<T> monoid) throws InterruptedException {
+        return mapReduce(threads, values.spliterator(), Function.identity(), monoid);
+    }
+
+    public <T, R> R mapReduce(int threads, Iterable<? extends T> values, Function<? super T, R> lift, Monoid<R> monoid)
+            throws InterruptedException {
+        return mapReduce(threads, values.spliterator(), lift, monoid);
+    }
+
+    public <T, R> R mapReduce(int threads, Stream<? extends T> values, Function<? super T, R> lift, Monoid<R> monoid)
+            throws InterruptedException {
+        return mapReduce(threads, values.spliterator(), lift, monoid);
+    }
+
+    /**
+     * Maps and reduces values of a spliterator without copying them into a list first.
+     * Spliterators with known sizes of splits, such as ones of arrays and array lists, are split into chunks,
+     * splitting the largest chunk first, so uneven splits are balanced.
+     * Other spliterators, such as ones over iterators, are read in batches by workers,
+     * so only a few batches per worker are in memory at once.
+     */
+    public <T, R> R mapReduce(int threads, Spliterator<? extends T> values, Function<? super T, R> lift, Monoid<R> monoid)
+            throws InterruptedException {
+        return sourceOperation(threads,
+                values,
+                stream -> stream.map(lift).reduce(monoid.getIdentity(), monoid.getOperator(), monoid.getOperator()),
+                stream -> stream.reduce(monoid.getIdentity(), monoid.getOperator()));
+    }
+
     @Override
     public String join(int threads, List<?> values) throws InterruptedException {
         return concurrentOperation(threads,
@@ -103,7 +221,156 @@ public class IterativeParallelism implements AdvancedIP {
                 stream -> stream.map(f));
     }
 
-    private void joinAll(List<Thread> threads) throws InterruptedException {
+    public <T> List<T> filter(int threads, Iterable<? extends T> values, Predicate<? super T> predicate)
+            throws InterruptedException {
+        return filter(threads, values.spliterator(), predicate);
+    }
+
+    public <T> List<T> filter(int threads, Stream<? extends T> values, Predicate<? super T> predicate)
+            throws InterruptedException {
+        return filter(threads, values.spliterator(), predicate);
+    }
+
+    /**
+     * Filters values of a spliterator, keeping their order, see {@link #mapReduce(int, Spliterator, Function, Monoid)}.
+     */
+    public <T> List<T> filter(int threads, Spliterator<? extends T> values, Predicate<? super T> predicate)
+            throws InterruptedException {
+        return flatSourceOperation(threads, values, stream -> stream.filter(predicate));
+    }
+
+    public <T, U> List<U> map(int threads, Iterable<? extends T> values, Function<? super T, ? extends U> f)
+            throws InterruptedException {
+        return map(threads, values.spliterator(), f);
+    }
+
+    public <T, U> List<U> map(int threads, Stream<? extends T> values, Function<? super T, ? extends U> f)
+            throws InterruptedException {
+        return map(threads, values.spliterator(), f);
+    }
+
+    /**
+     * Maps values of a spliterator, keeping their order, see {@link #mapReduce(int, Spliterator, Function, Monoid)}.
+     */
+    public <T, U> List<U> map(int threads, Spliterator<? extends T> values, Function<? super T, ? extends U> f)
+            throws InterruptedException {
+        return flatSourceOperation(threads, values, stream -> stream.map(f));
+    }
+
+    private <T, R> List<R> flatSourceOperation(int threads, Spliterator<? extends T> values,
+                                               Function<Stream<? extends T>, Stream<? extends R>> streamFunction)
+            throws InterruptedException {
+        return sourceOperation(threads,
+                values,
+                stream -> streamFunction.apply(stream).collect(Collectors.toList()),
+                lists -> lists.flatMap(Collection::stream).collect(Collectors.toList()));
+    }
+
+    private <T, R> R sourceOperation(int threads, Spliterator<? extends T> values,
+                                     Function<? super Stream<? extends T>, R> streamRFunction,
+                                     Function<? super Stream<R>, R> resultJoiner) throws InterruptedException {
+        boolean sized = values.hasCharacteristics(Spliterator.SUBSIZED);
+        int size = (int) Math.min(Integer.MAX_VALUE, values.estimateSize());
+        threads = sized ? adaptThreads(threads, size) : adaptThreads(threads, Integer.MAX_VALUE);
+        long start = System.nanoTime();
+        R result;
+        if (threads == 1) {
+            result = resultJoiner.apply(Stream.of(streamRFunction.apply(StreamSupport.stream(values, false))));
+        } else if (sized) {
+            result = resultJoiner.apply(mapAll(threads, split(values, getChunksCount(threads)),
+                    chunk -> streamRFunction.apply(StreamSupport.stream(chunk, false))).stream());
+        } else {
+            Batches<T> batches = new Batches<>(values);
+            List<Batch<R>> mapped = mapAll(threads, new IndexList(threads), worker -> {
+                List<Batch<R>> results = new ArrayList<>();
+                Batch<List<T>> batch;
+                while ((batch = batches.next()) != null) {
+                    results.add(new Batch<>(batch.index, streamRFunction.apply(batch.values.stream())));
+                }
+                return results;
+            }).stream().flatMap(Collection::stream).collect(Collectors.toList());
+            mapped.sort(Comparator.comparingInt(batch -> batch.index));
+            result = resultJoiner.apply(mapped.stream().map(batch -> batch.values));
+        }
+        if (costModel != null && sized) {
+            costModel.record(size, threads, System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Splits spliterator into at most {@code count} chunks in order, always splitting the largest chunk.
+     */
+    private static <T> List<Spliterator<? extends T>> split(Spliterator<? extends T> values, int count) {
+        List<Spliterator<? extends T>> chunks = new ArrayList<>();
+        chunks.add(values);
+        while (chunks.size() < count) {
+            int largest = 0;
+            for (int i = 1; i < chunks.size(); i++) {
+                if (chunks.get(i).estimateSize() > chunks.get(largest).estimateSize()) {
+                    largest = i;
+                }
+            }
+            if (chunks.get(largest).estimateSize() < 2) {
+                break;
+            }
+            Spliterator<? extends T> prefix = chunks.get(largest).trySplit();
+            if (prefix == null) {
+                break;
+            }
+            chunks.add(largest, prefix);
+        }
+        return chunks;
+    }
+
+    private static class Batch<T> {
+        private final int index;
+        private final T values;
+
+        private Batch(int index, T values) {
+            this.index = index;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Hands out consecutive batches of a spliterator that cannot be split evenly, such as one over a cursor.
+     * Batches start small, so that short inputs are still shared between workers, and grow up to
+     * {@link #MAX_BATCH_SIZE} elements.
+     */
+    private static class Batches<T> {
+        private final static int MIN_BATCH_SIZE = 16;
+        private final static int MAX_BATCH_SIZE = 1024;
+        private final Spliterator<? extends T> values;
+        private int batchSize = MIN_BATCH_SIZE;
+        private int index;
+        private boolean exhausted;
+
+        private Batches(Spliterator<? extends T> values) {
+            this.values = values;
+        }
+
+        public synchronized Batch<List<T>> next() {
+            if (exhausted) {
+                return null;
+            }
+            List<T> batch = new ArrayList<>(batchSize);
+            boolean advanced = true;
+            while (advanced && batch.size() < batchSize) {
+                advanced = values.tryAdvance(batch::add);
+            }
+            if (batch.size() < batchSize) {
+                exhausted = true;
+                if (batch.isEmpty()) {
+                    return null;
+                }
+            }
+            batchSize = Math.min(MAX_BATCH_SIZE, batchSize * 2);
+            return new Batch<>(index++, batch);
+        }
+    }
+
+    static void joinAll(List<Thread> threads) throws InterruptedException {
         InterruptedException exception = null;
         for (Thread thread : threads) {
             while (true) {
@@ -123,14 +390,18 @@ public class IterativeParallelism implements AdvancedIP {
         }
     }
 
-    private <T, R> List<Thread> buildThreads(int threads, List<T> values, Function<? super Stream<? extends T>, R> streamRFunction,
+    private <T, R> List<Thread> buildThreads(int threads, List<Stream<? extends T>> streamList,
+                                             Function<? super Stream<? extends T>, R> streamRFunction,
                                              List<R> threadOutput) {
-        List<Stream<? extends T>> streamList = buildStreams(threads, values);
+        AtomicInteger nextChunk = new AtomicInteger();
         List<Thread> threadList = new ArrayList<>();
-        for (int i = 0; i < streamList.size(); i++) {
-            final int index = i;
-            threadList.add(new Thread(() -> threadOutput.set(index,
-                    streamRFunction.apply(streamList.get(index)))));
+        for (int i = 0; i < threads; i++) {
+            threadList.add(threadFactory.newThread(() -> {
+                int index;
+                while ((index = nextChunk.getAndIncrement()) < streamList.size()) {
+                    threadOutput.set(index, streamRFunction.apply(streamList.get(index)));
+                }
+            }));
         }
         return threadList;
     }
@@ -147,15 +418,47 @@ public class IterativeParallelism implements AdvancedIP {
 
     private <T, R> R concurrentOperation(int threads, List<T> values, Function<? super Stream<? extends T>, R> streamRFunction,
                                          Function<? super Stream<R>, R> resultJoiner) throws InterruptedException {
+        if (costModel != null) {
+            threads = adaptThreads(threads, values.size());
+            long start = System.nanoTime();
+            R result = parallelOperation(threads, values, streamRFunction, resultJoiner);
+            costModel.record(values.size(), threads, System.nanoTime() - start);
+            return result;
+        }
+        return parallelOperation(threads, values, streamRFunction, resultJoiner);
+    }
+
+    private int adaptThreads(int threads, int size) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be greater or equal to 1");
+        }
+        if (costModel == null) {
+            return threads;
+        }
+        return SharedPool.MAPPER.isWorkerThread() ? 1 : costModel.threads(threads, size);
+    }
+
+    private <C, R> List<R> mapAll(int threads, List<C> items, Function<? super C, ? extends R> f) throws InterruptedException {
+        return parallelOperation(threads,
+                items,
+                stream -> stream.<R>map(f).collect(Collectors.toList()),
+                lists -> lists.flatMap(Collection::stream).collect(Collectors.toList()));
+    }
+
+    private <T, R> R parallelOperation(int threads, List<T> values, Function<? super Stream<? extends T>, R> streamRFunction,
+                                       Function<? super Stream<R>, R> resultJoiner) throws InterruptedException {
+        if (costModel != null && threads == 1) {
+            return resultJoiner.apply(values.isEmpty() ? Stream.empty() : Stream.of(streamRFunction.apply(values.stream())));
+        }
         List<R> threadOutput;
+        List<Stream<? extends T>> streamList = buildStreams(getChunksCount(threads), values);
         if (mapper == null) {
-            threads = getActualThreadsCount(threads, values);
-            threadOutput = new ArrayList<>(Collections.nCopies(threads, null));
-            List<Thread> threadList = buildThreads(threads, values, streamRFunction, threadOutput);
+            threads = Math.min(threads, streamList.size());
+            threadOutput = new ArrayList<>(Collections.nCopies(streamList.size(), null));
+            List<Thread> threadList = buildThreads(threads, streamList, streamRFunction, threadOutput);
             startThreads(threadList);
             joinAll(threadList);
         } else {
-            List<Stream<? extends T>> streamList = buildStreams(threads, values);
             threadOutput = mapper.map(streamRFunction, streamList);
         }
         return joinResults(threadOutput, resultJoiner);
@@ -174,7 +477,14 @@ public class IterativeParallelism implements AdvancedIP {
 
     @Override
     public <T> boolean all(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return concurrentOperation(threads, values, (stream -> stream.allMatch(predicate)),
+        AtomicBoolean failed = new AtomicBoolean();
+        return concurrentOperation(threads, values, (stream -> {
+                    boolean result = stream.takeWhile(value -> !failed.get()).allMatch(predicate);
+                    if (!result) {
+                        failed.set(true);
+                    }
+                    return result;
+                }),
                 (stream -> stream.allMatch(Boolean::booleanValue)));
     }
 
@@ -182,4 +492,172 @@ public class IterativeParallelism implements AdvancedIP {
     public <T> boolean any(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
         return !all(threads, values, predicate.negate());
     }
+
+    /**
+     * Returns index of the first value satisfying {@code predicate} or {@code -1} if there is no such value.
+     * Threads stop scanning as soon as a match with a lesser index is found.
+     */
+    public <T> int indexOf(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        return searchOperation(threads, values, predicate, true);
+    }
+
+    /**
+     * Returns the first value satisfying {@code predicate} or {@code null} if there is no such value.
+     */
+    public <T> T findFirst(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        int index = searchOperation(threads, values, predicate, true);
+        return index == -1 ? null : values.get(index);
+    }
+
+    /**
+     * Returns any value satisfying {@code predicate} or {@code null} if there is no such value.
+     * All threads stop scanning as soon as some match is found.
+     */
+    public <T> T findAny(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        int index = searchOperation(threads, values, predicate, false);
+        return index == -1 ? null : values.get(index);
+    }
+
+    private <T> int searchOperation(int threads, List<? extends T> values, Predicate<? super T> predicate,
+                                    boolean first) throws InterruptedException {
+        List<? extends T> list = values instanceof RandomAccess ? values : new ArrayList<>(values);
+        int size = list.size();
+        if (size == 0) {
+            return -1;
+        }
+        AtomicInteger found = new AtomicInteger(size);
+        IntPredicate searching = first ? (index -> index < found.get()) : (index -> found.get() == size);
+        int index = concurrentOperation(threads, new IndexList(size), (stream -> {
+                    OptionalInt result = stream.mapToInt(Integer::intValue)
+                            .takeWhile(searching)
+                            .filter(i -> predicate.test(list.get(i)))
+                            .findFirst();
+                    result.ifPresent(i -> found.accumulateAndGet(i, Math::min));
+                    return result.orElse(size);
+                }),
+                (stream -> stream.min(Integer::compare).orElse(size)));
+        return index == size ? -1 : index;
+    }
+
+    /**
+     * Returns values sorted by {@code comparator}. Chunks are sorted in parallel and then merged pairwise,
+     * merges of the same round running in parallel. Sort is stable.
+     */
+    public <T> List<T> sort(int threads, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
+        threads = adaptThreads(threads, values.size());
+        List<List<T>> sorted = mapAll(threads, buildChunks(threads, values), chunk -> {
+            List<T> result = new ArrayList<>(chunk);
+            result.sort(comparator);
+            return result;
+        });
+        while (sorted.size() > 1) {
+            List<List<T>> lists = sorted;
+            sorted = mapAll(threads, new IndexList((lists.size() + 1) / 2), i -> 2 * i + 1 < lists.size()
+                    ? merge(lists.get(2 * i), lists.get(2 * i + 1), comparator)
+                    : lists.get(2 * i));
+        }
+        return sorted.isEmpty() ? new ArrayList<>() : sorted.get(0);
+    }
+
+    private static <T> List<T> merge(List<T> left, List<T> right, Comparator<? super T> comparator) {
+        List<T> result = new ArrayList<>(left.size() + right.size());
+        int i = 0;
+        int j = 0;
+        while (i < left.size() && j < right.size()) {
+            result.add(comparator.compare(right.get(j), left.get(i)) < 0 ? right.get(j++) : left.get(i++));
+        }
+        result.addAll(left.subList(i, left.size()));
+        result.addAll(right.subList(j, right.size()));
+        return result;
+    }
+
+    /**
+     * Returns prefix sums of values over {@code monoid}: {@code i}-th result combines values up to {@code i}-th
+     * inclusive, or up to {@code i}-th exclusive if {@code inclusive} is {@code false}.
+     * Totals of chunks are computed in parallel, then every chunk is scanned in parallel from its offset.
+     */
+    public <T> List<T> prefixScan(int threads, List<? extends T> values, Monoid<T> monoid, boolean inclusive)
+            throws InterruptedException {
+        threads = adaptThreads(threads, values.size());
+        List<? extends List<? extends T>> chunks = buildChunks(threads, values);
+        List<T> totals = mapAll(threads, chunks, chunk -> {
+            T total = monoid.getIdentity();
+            for (T value : chunk) {
+                total = monoid.getOperator().apply(total, value);
+            }
+            return total;
+        });
+        List<T> offsets = new ArrayList<>(totals.size());
+        T offset = monoid.getIdentity();
+        for (T total : totals) {
+            offsets.add(offset);
+            offset = monoid.getOperator().apply(offset, total);
+        }
+        List<List<T>> scanned = mapAll(threads, new IndexList(chunks.size()), index -> {
+            List<T> result = new ArrayList<>(chunks.get(index).size());
+            T accumulator = offsets.get(index);
+            for (T value : chunks.get(index)) {
+                T next = monoid.getOperator().apply(accumulator, value);
+                result.add(inclusive ? next : accumulator);
+                accumulator = next;
+            }
+            return result;
+        });
+        return scanned.stream().flatMap(Collection::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * Groups values by {@code classifier}. Chunks are grouped in parallel and their maps are merged in order
+     * of chunks, so groups keep values in order of {@code values}.
+     */
+    public <T, K> Map<K, List<T>> groupBy(int threads, List<? extends T> values, Function<? super T, ? extends K> classifier)
+            throws InterruptedException {
+        return concurrentOperation(threads,
+                values,
+                stream -> {
+                    Map<K, List<T>> groups = new LinkedHashMap<>();
+                    stream.forEach(value -> groups.computeIfAbsent(classifier.apply(value), key -> new ArrayList<>()).add(value));
+                    return groups;
+                },
+                maps -> maps.reduce(new LinkedHashMap<>(), (result, groups) -> {
+                    groups.forEach((key, group) -> result.merge(key, group, (left, right) -> {
+                        left.addAll(right);
+                        return left;
+                    }));
+                    return result;
+                }));
+    }
+
+    /**
+     * Returns distinct values in order of their first occurrence.
+     * Duplicates are removed within chunks in parallel, then chunks are merged in order.
+     */
+    public <T> List<T> distinct(int threads, List<? extends T> values) throws InterruptedException {
+        Set<T> result = concurrentOperation(threads,
+                values,
+                stream -> stream.collect(Collectors.toCollection(LinkedHashSet::new)),
+                sets -> sets.reduce(new LinkedHashSet<>(), (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                }));
+        return new ArrayList<>(result);
+    }
+
+    private static class IndexList extends AbstractList<Integer> implements RandomAccess {
+        private final int size;
+
+        private IndexList(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import java.time.Duration;
+
+/**
+ * Scheduling options of a single {@link ParallelMapperImpl} call.
+ * <ul>
+ *     <li>{@code priority}: while calls of all priorities are waiting, high, normal and low priority calls
+ *     get batches in proportion {@code 4:2:1}</li>
+ *     <li>{@code weight}: calls of the same priority take turns, and a call with weight {@code w}
+ *     claims {@code w} times more elements per turn</li>
+ *     <li>{@code timeout}: once it expires, elements that are not started yet are dropped
+ *     and the call fails with {@link java.util.concurrent.CancellationException}</li>
+ * </ul>
+ */
+public final class MapOptions {
+    public enum Priority {
+        LOW, NORMAL, HIGH
+    }
+
+    public final static int MAX_WEIGHT = 64;
+    public final static MapOptions DEFAULT = new MapOptions(Priority.NORMAL, 1, null);
+
+    private final Priority priority;
+    private final int weight;
+    private final Duration timeout;
+
+    private MapOptions(Priority priority, int weight, Duration timeout) {
+        this.priority = priority;
+        this.weight = weight;
+        this.timeout = timeout;
+    }
+
+    public MapOptions withPriority(Priority priority) {
+        return new MapOptions(priority, weight, timeout);
+    }
+
+    public MapOptions withWeight(int weight) {
+        if (weight < 1 || weight > MAX_WEIGHT) {
+            throw new IllegalArgumentException("Weight should be in range [1, " + MAX_WEIGHT + "]");
+        }
+        return new MapOptions(priority, weight, timeout);
+    }
+
+    public MapOptions withTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Timeout should be non-negative");
+        }
+        return new MapOptions(priority, weight, timeout);
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns timeout of the call or {@code null} if there is no timeout.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,298 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import info.kgeorgiy.ja.garipov.metrics.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters of a {@link ParallelMapperImpl}: submitted and completed map calls (tasks), failures,
+ * queue state, latencies, started threads and busy time of every worker.
+ * <p>
+ * Counters are updated once per task or per batch of elements, with {@link LongAdder}s,
+ * so they are cheap enough to be always on.
+ */
+public class MapperMetrics implements MapperMetricsMBean {
+    private final static String OBJECT_NAME = "info.kgeorgiy.ja.garipov.concurrent:type=ParallelMapper,name=mapper-";
+    private final static AtomicInteger MAPPERS = new AtomicInteger();
+    private final long start = System.nanoTime();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder elementsFailed = new LongAdder();
+    private final LongAdder pendingElements = new LongAdder();
+    private final LongAdder threadsStarted = new LongAdder();
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final AtomicLongArray workerBusy;
+    private final IntSupplier queuedTasks;
+    private ObjectName name;
+
+    MapperMetrics(int workers, IntSupplier queuedTasks) {
+        workerBusy = new AtomicLongArray(workers);
+        this.queuedTasks = queuedTasks;
+    }
+
+    void recordSubmitted(int size) {
+        submitted.increment();
+        pendingElements.add(size);
+    }
+
+    void recordStarted(long waitNanos) {
+        queueWait.record(waitNanos);
+    }
+
+    void recordClaimed(int elements) {
+        pendingElements.add(-elements);
+    }
+
+    void recordElementFailed() {
+        elementsFailed.increment();
+    }
+
+    void recordCompleted(long latencyNanos, boolean taskFailed) {
+        completed.increment();
+        if (taskFailed) {
+            failed.increment();
+        }
+        taskLatency.record(latencyNanos);
+    }
+
+    void recordThreadStarted() {
+        threadsStarted.increment();
+    }
+
+    void recordBusy(int worker, long nanos) {
+        workerBusy.addAndGet(worker, nanos);
+    }
+
+    /**
+     * Registers this metrics in the platform MBean server under a unique name.
+     */
+    public synchronized void register() throws JMException {
+        if (name == null) {
+            name = new ObjectName(OBJECT_NAME + MAPPERS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        }
+    }
+
+    synchronized void unregister() {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException ignored) {
+                // already unregistered
+            }
+            name = null;
+        }
+    }
+
+    /**
+     * Returns copy of current values, that does not change afterwards.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    @Override
+    public long getTasksSubmitted() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getTasksCompleted() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getTasksFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getElementsFailed() {
+        return elementsFailed.sum();
+    }
+
+    @Override
+    public int getQueuedTasks() {
+        return queuedTasks.getAsInt();
+    }
+
+    @Override
+    public long getPendingElements() {
+        return pendingElements.sum();
+    }
+
+    @Override
+    public long getThreadsStarted() {
+        return threadsStarted.sum();
+    }
+
+    @Override
+    public long getTaskLatencyMedianMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(taskLatency.getPercentile(50));
+    }
+
+    @Override
+    public long getTaskLatency99PercentileMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(taskLatency.getPercentile(99));
+    }
+
+    @Override
+    public long[] getTaskLatencyHistogram() {
+        return taskLatency.getCounts();
+    }
+
+    @Override
+    public long getQueueWaitMedianMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(queueWait.getPercentile(50));
+    }
+
+    @Override
+    public long getQueueWait99PercentileMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(queueWait.getPercentile(99));
+    }
+
+    @Override
+    public long[] getQueueWaitHistogram() {
+        return queueWait.getCounts();
+    }
+
+    @Override
+    public double[] getWorkerBusyRatios() {
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        double[] ratios = new double[workerBusy.length()];
+        for (int i = 0; i < ratios.length; i++) {
+            ratios[i] = (double) workerBusy.get(i) / elapsed;
+        }
+        return ratios;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    public static class Snapshot implements MapperMetricsMBean {
+        private final long tasksSubmitted;
+        private final long tasksCompleted;
+        private final long tasksFailed;
+        private final long elementsFailed;
+        private final int queuedTasks;
+        private final long pendingElements;
+        private final long threadsStarted;
+        private final long[] taskLatencyHistogram;
+        private final long taskLatencyMedianMicros;
+        private final long taskLatency99PercentileMicros;
+        private final long[] queueWaitHistogram;
+        private final long queueWaitMedianMicros;
+        private final long queueWait99PercentileMicros;
+        private final double[] workerBusyRatios;
+
+        private Snapshot(MapperMetricsMBean metrics) {
+            tasksSubmitted = metrics.getTasksSubmitted();
+            tasksCompleted = metrics.getTasksCompleted();
+            tasksFailed = metrics.getTasksFailed();
+            elementsFailed = metrics.getElementsFailed();
+            queuedTasks = metrics.getQueuedTasks();
+            pendingElements = metrics.getPendingElements();
+            threadsStarted = metrics.getThreadsStarted();
+            taskLatencyHistogram = metrics.getTaskLatencyHistogram();
+            taskLatencyMedianMicros = metrics.getTaskLatencyMedianMicros();
+            taskLatency99PercentileMicros = metrics.getTaskLatency99PercentileMicros();
+            queueWaitHistogram = metrics.getQueueWaitHistogram();
+            queueWaitMedianMicros = metrics.getQueueWaitMedianMicros();
+            queueWait99PercentileMicros = metrics.getQueueWait99PercentileMicros();
+            workerBusyRatios = metrics.getWorkerBusyRatios();
+        }
+
+        @Override
+        public long getTasksSubmitted() {
+            return tasksSubmitted;
+        }
+
+        @Override
+        public long getTasksCompleted() {
+            return tasksCompleted;
+        }
+
+        @Override
+        public long getTasksFailed() {
+            return tasksFailed;
+        }
+
+        @Override
+        public long getElementsFailed() {
+            return elementsFailed;
+        }
+
+        @Override
+        public int getQueuedTasks() {
+            return queuedTasks;
+        }
+
+        @Override
+        public long getPendingElements() {
+            return pendingElements;
+        }
+
+        @Override
+        public long getThreadsStarted() {
+            return threadsStarted;
+        }
+
+        @Override
+        public long getTaskLatencyMedianMicros() {
+            return taskLatencyMedianMicros;
+        }
+
+        @Override
+        public long getTaskLatency99PercentileMicros() {
+            return taskLatency99PercentileMicros;
+        }
+
+        @Override
+        public long[] getTaskLatencyHistogram() {
+            return taskLatencyHistogram.clone();
+        }
+
+        @Override
+        public long getQueueWaitMedianMicros() {
+            return queueWaitMedianMicros;
+        }
+
+        @Override
+        public long getQueueWait99PercentileMicros() {
+            return queueWait99PercentileMicros;
+        }
+
+        @Override
+        public long[] getQueueWaitHistogram() {
+            return queueWaitHistogram.clone();
+        }
+
+        @Override
+        public double[] getWorkerBusyRatios() {
+            return workerBusyRatios.clone();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("tasks submitted=%d completed=%d failed=%d elements failed=%d queued tasks=%d "
+                            + "pending elements=%d threads started=%d latency p50/p99=%d/%d us "
+                            + "queue wait p50/p99=%d/%d us busy=%s",
+                    tasksSubmitted, tasksCompleted, tasksFailed, elementsFailed, queuedTasks, pendingElements,
+                    threadsStarted,
+                    taskLatencyMedianMicros, taskLatency99PercentileMicros,
+                    queueWaitMedianMicros, queueWait99PercentileMicros, Arrays.toString(workerBusyRatios));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+public interface MapperMetricsMBean {
+    long getTasksSubmitted();
+
+    long getTasksCompleted();
+
+    long getTasksFailed();
+
+    long getElementsFailed();
+
+    int getQueuedTasks();
+
+    long getPendingElements();
+
+    long getThreadsStarted();
+
+    long getTaskLatencyMedianMicros();
+
+    long getTaskLatency99PercentileMicros();
+
+    long[] getTaskLatencyHistogram();
+
+    long getQueueWaitMedianMicros();
+
+    long getQueueWait99PercentileMicros();
+
+    long[] getQueueWaitHistogram();
+
+    double[] getWorkerBusyRatios();
+}
@@ -1,40 +1,197 @@
 package info.kgeorgiy.ja.garipov.concurrent;
 
-import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
-
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 
-public class ParallelMapperImpl implements ParallelMapper {
+public class ParallelMapperImpl implements AsyncParallelMapper {
+    private final static int MAX_BATCH_SIZE = 256;
+    private final static int BATCHES_PER_THREAD = 4;
+    private final static long TURN_NANOS = 500_000;
+    private final static int MAX_PLATFORM_CONCURRENCY = 1024;
+    private final static int VIRTUAL_THREADS_PER_PROCESSOR = 64;
+    private final static long KEEP_ALIVE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final static ThreadLocal<ParallelMapperImpl> WORKER_OF = new ThreadLocal<>();
     private final TasksQueue queue;
     private final List<Thread> workers;
+    private final ThreadFactory threadFactory;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final MapperMetrics metrics;
+
+    private ParallelMapperImpl(ThreadFactory threadFactory, int maxConcurrency) {
+        queue = null;
+        workers = List.of();
+        metrics = new MapperMetrics(0, () -> 0);
+        this.threadFactory = threadFactory;
+        this.maxConcurrency = maxConcurrency;
+        permits = maxConcurrency == Integer.MAX_VALUE ? null : new Semaphore(maxConcurrency);
+    }
 
     public ParallelMapperImpl(int threads) {
+        this(threads, false);
+    }
+
+    private ParallelMapperImpl(int threads, boolean daemon) {
+        threadFactory = null;
+        maxConcurrency = threads;
+        permits = null;
         queue = new TasksQueue();
+        metrics = new MapperMetrics(threads, queue::size);
         workers = new ArrayList<>();
         IntStream.range(0, threads).mapToObj(i -> new Thread(() -> {
+            WORKER_OF.set(this);
             try {
-                while (!Thread.interrupted()) {
-                    queue.poll().run();
+                while (!Thread.interrupted() && !queue.isClosed()) {
+                    long busy = queue.runBatch();
+                    if (busy > 0) {
+                        metrics.recordBusy(i, busy);
+                    }
                 }
             } catch (InterruptedException ignored) {
             } finally {
                 Thread.currentThread().interrupt();
             }
         })).forEach(workers::add);
-        workers.forEach(Thread::start);
+        workers.forEach(worker -> worker.setDaemon(daemon));
+        for (Thread worker : workers) {
+            worker.start();
+            metrics.recordThreadStarted();
+        }
+    }
+
+    /**
+     * Creates mapper with daemon workers, that may be shared for the whole application lifetime without closing.
+     */
+    static ParallelMapperImpl daemon(int threads) {
+        return new ParallelMapperImpl(threads, true);
+    }
+
+    /**
+     * Creates mapper that maps elements in virtual threads, suitable for blocking functions.
+     * At most {@code maxConcurrency} elements are mapped at once. {@code 0} means
+     * {@value #VIRTUAL_THREADS_PER_PROCESSOR} threads per processor, or {@value #MAX_PLATFORM_CONCURRENCY}
+     * platform threads on JVMs without virtual threads.
+     * <p>
+     * A call runs at most that many threads at once, each of them taking elements one by one.
+     * A {@link #map map} call starts no other threads. A {@link #mapStreaming streaming} call also runs
+     * no more threads than its buffer size. Its threads wait while the buffer is full and exit if the consumer
+     * takes no results for a second; such threads are replaced once results are taken again.
+     */
+    public static ParallelMapperImpl virtual(int maxConcurrency) {
+        if (maxConcurrency < 0) {
+            throw new IllegalArgumentException("Concurrency limit should be non-negative");
+        }
+        if (maxConcurrency == 0) {
+            maxConcurrency = VirtualThreads.isSupported()
+                    ? VIRTUAL_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()
+                    : MAX_PLATFORM_CONCURRENCY;
+        }
+        return new ParallelMapperImpl(VirtualThreads.factory(), maxConcurrency);
+    }
+
+    /**
+     * Returns whether the current thread is a worker of this mapper.
+     * Such a thread should not wait for other calls of this mapper, since they may need that very worker.
+     */
+    boolean isWorkerThread() {
+        return WORKER_OF.get() == this;
+    }
+
+    /**
+     * Returns the number of elements mapped at once: workers of a pool, or the limit of a virtual mapper.
+     */
+    int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns metrics of this mapper. Call {@link MapperMetrics#register()} to expose them through JMX.
+     */
+    public MapperMetrics getMetrics() {
+        return metrics;
     }
 
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
-        TaskResult<R> taskResult = new TaskResult<>(args.size());
-        queue.add(args, taskResult, f);
-        return taskResult.getResult();
+        return map(f, args, MapOptions.DEFAULT);
+    }
+
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args, MapOptions options)
+            throws InterruptedException {
+        ListResults<R> results = new ListResults<>(args.size());
+        Task<T, R> task = submit(f, args, results, options);
+        try {
+            return results.get();
+        } catch (InterruptedException e) {
+            task.cancel(new CancellationException("Map call was interrupted"));
+            throw e;
+        }
+    }
+
+    @Override
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args) {
+        return mapAsync(f, args, MapOptions.DEFAULT);
+    }
+
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args,
+                                                      MapOptions options) {
+        ListResults<R> results = new ListResults<>(args.size());
+        Task<T, R> task = submit(f, args, results, options);
+        results.future.whenComplete((list, e) -> {
+            if (e instanceof CancellationException) {
+                task.cancel((CancellationException) e);
+            }
+        });
+        return results.future;
+    }
+
+    @Override
+    public <T, R> ResultStream<R> mapStreaming(Function<? super T, ? extends R> f, List<? extends T> args,
+                                               int bufferSize, boolean ordered) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size should be greater or equal to 1");
+        }
+        StreamResults<R> results = ordered
+                ? new OrderedResults<>(args.size(), bufferSize)
+                : new UnorderedResults<>(args.size(), bufferSize);
+        results.task = submit(f, args, results, MapOptions.DEFAULT);
+        return results;
+    }
+
+    private <T, R> Task<T, R> submit(Function<? super T, ? extends R> f, List<? extends T> args, Results<R> results,
+                                     MapOptions options) {
+        List<? extends T> values = args instanceof RandomAccess ? args : new ArrayList<>(args);
+        Task<T, R> task;
+        if (threadFactory != null) {
+            int threads = Math.min(values.size(), Math.min(maxConcurrency, results.claimLimit()));
+            task = new Task<>(values, f, 1, 1, options.getPriority(), results, new ThreadScheduler(threads), metrics);
+        } else {
+            int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE,
+                    values.size() / (BATCHES_PER_THREAD * Math.max(1, workers.size()))));
+            task = new Task<>(values, f, batchSize, options.getWeight(), options.getPriority(), results, queue, metrics);
+        }
+        if (values.isEmpty()) {
+            return task;
+        }
+        metrics.recordSubmitted(values.size());
+        if (options.getTimeout() != null) {
+            task.timeout = Timeouts.EXECUTOR.schedule(
+                    () -> task.cancel(new CancellationException("Timeout of map call expired")),
+                    options.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        task.scheduler.resume(task, Math.min(values.size(), maxConcurrency));
+        return task;
     }
 
     @Override
     public void close() {
+        metrics.unregister();
+        if (queue != null) {
+            queue.close();
+        }
         for (int i = 0; i < workers.size(); i++) {
             workers.get(i).interrupt();
             try {
@@ -42,72 +199,622 @@ public class ParallelMapperImpl implements ParallelMapper {
             } catch (InterruptedException ignored) {
                 i--;
             }
+        }
+    }
 
+    /**
+     * Timer of map calls with timeouts. Timers of completed calls are removed right away,
+     * so they do not keep tasks and their results reachable until the deadline.
+     */
+    private static class Timeouts {
+        private final static ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "map-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            EXECUTOR.setRemoveOnCancelPolicy(true);
         }
     }
 
-    private static class TasksQueue {
-        private final Queue<Runnable> queue = new ArrayDeque<>();
+    /**
+     * Decides which threads work on a task. Workers leave a task when it has no elements that may be claimed,
+     * and the task is resumed with the number of workers that left it, once it may have them again.
+     */
+    private interface Scheduler {
+        /**
+         * Called after a batch of the task is claimed, if it has more elements.
+         */
+        void claimed(Task<?, ?> task);
 
-        public synchronized Runnable poll() throws InterruptedException {
-            while (queue.isEmpty()) {
-                wait();
+        void resume(Task<?, ?> task, int workers);
+    }
+
+    /**
+     * Runs a task in at most {@code maxThreads} threads of its own. A thread that finds the task parked waits
+     * to be resumed for {@link #KEEP_ALIVE_NANOS}, so a streaming call reuses its threads while the consumer
+     * takes results, and does not keep them once the consumer is gone. New threads are started only to replace
+     * parked threads that have exited. Threads exit once there is nothing to claim.
+     */
+    private class ThreadScheduler implements Scheduler {
+        private final int maxThreads;
+        private int threads;
+        private int waiting;
+        private long resumes;
+
+        public ThreadScheduler(int maxThreads) {
+            this.maxThreads = maxThreads;
+        }
+
+        @Override
+        public void claimed(Task<?, ?> task) {
+        }
+
+        @Override
+        public void resume(Task<?, ?> task, int workers) {
+            int started;
+            synchronized (this) {
+                resumes++;
+                notifyAll();
+                started = task.hasUnclaimed() ? Math.max(0, Math.min(workers - waiting, maxThreads - threads)) : 0;
+                threads += started;
+            }
+            for (int i = 0; i < started; i++) {
+                threadFactory.newThread(() -> run(task)).start();
+                metrics.recordThreadStarted();
             }
-            return queue.poll();
         }
 
-        public synchronized <T, R> void add(List<T> args, TaskResult<R> taskResult, Function<? super T, ? extends R> f) {
-            IntStream.range(0, args.size())
-                    .<Runnable>mapToObj(finalI -> () -> taskResult.calculate(finalI, args.get(finalI), f))
-                    .forEach(queue::add);
-            notifyAll();
+        private void run(Task<?, ?> task) {
+            try {
+                do {
+                    boolean claimed = true;
+                    while (claimed) {
+                        if (permits != null) {
+                            permits.acquire();
+                        }
+                        try {
+                            claimed = task.runBatch();
+                        } finally {
+                            if (permits != null) {
+                                permits.release();
+                            }
+                        }
+                    }
+                } while (awaitResume(task));
+            } catch (InterruptedException e) {
+                synchronized (this) {
+                    threads--;
+                }
+            }
+        }
+
+        /**
+         * Waits until the parked task is resumed. Returns {@code false} and leaves the task if it has nothing
+         * to claim or is not resumed within {@link #KEEP_ALIVE_NANOS}.
+         */
+        private synchronized boolean awaitResume(Task<?, ?> task) throws InterruptedException {
+            long deadline = System.nanoTime() + KEEP_ALIVE_NANOS;
+            long seen = resumes;
+            waiting++;
+            try {
+                long left;
+                while (task.isParked() && resumes == seen && (left = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, left);
+                }
+            } finally {
+                waiting--;
+            }
+            if (task.hasUnclaimed() && (resumes != seen || !task.isParked())) {
+                return true;
+            }
+            threads--;
+            return false;
         }
     }
 
-    private static class TaskResult<R> {
-        private int counter;
-        private final List<R> mapped;
-        private RuntimeException taskException;
+    /**
+     * Round-robin queues of submitted tasks, one per priority. A worker takes the head task of a queue,
+     * claims a batch of it and puts it back to the tail before running the batch,
+     * so calls of the same priority take turns and several workers may run one call.
+     * Priorities take turns according to {@link #TURNS}: while all of them have tasks, high, normal and low
+     * priority calls get batches in proportion {@code 4:2:1}, so low priority calls never starve.
+     * A priority without tasks passes its turn to the highest priority that has them.
+     * Queues are lock-free, the monitor is only used to put idle workers to sleep.
+     */
+    private static class TasksQueue implements Scheduler {
+        private final static MapOptions.Priority[] TURNS = {
+                MapOptions.Priority.HIGH, MapOptions.Priority.NORMAL, MapOptions.Priority.HIGH, MapOptions.Priority.LOW,
+                MapOptions.Priority.HIGH, MapOptions.Priority.NORMAL, MapOptions.Priority.HIGH
+        };
+        private final List<Queue<Task<?, ?>>> queues = new ArrayList<>();
+        private final AtomicInteger idle = new AtomicInteger();
+        private final AtomicInteger turn = new AtomicInteger();
+        private volatile boolean closed;
 
-        public TaskResult(int size) {
-            counter = size;
-            mapped = new ArrayList<>(Collections.nCopies(size, null));
-            taskException = null;
+        public TasksQueue() {
+            for (int i = 0; i < MapOptions.Priority.values().length; i++) {
+                queues.add(new ConcurrentLinkedQueue<>());
+            }
         }
 
-        public <T> void calculate(final int index, final T functionArgument, final Function<? super T, ? extends R> f) {
-            try {
-                R value = f.apply(functionArgument);
+        /**
+         * Runs a batch of the next task or waits for a task to be added.
+         * Returns time spent running the batch.
+         */
+        public long runBatch() throws InterruptedException {
+            Task<?, ?> task = poll();
+            if (task == null) {
                 synchronized (this) {
-                    mapped.set(index, value);
+                    idle.incrementAndGet();
+                    try {
+                        while (isEmpty() && !closed) {
+                            wait();
+                        }
+                    } finally {
+                        idle.decrementAndGet();
+                    }
                 }
-            } catch (RuntimeException runtimeException) {
+                return 0;
+            }
+            long start = System.nanoTime();
+            task.runBatch();
+            return System.nanoTime() - start;
+        }
+
+        private Task<?, ?> poll() {
+            int preferred = TURNS[Math.floorMod(turn.getAndIncrement(), TURNS.length)].ordinal();
+            Task<?, ?> preferredTask = queues.get(preferred).poll();
+            if (preferredTask != null) {
+                return preferredTask;
+            }
+            for (int i = queues.size() - 1; i >= 0; i--) {
+                Task<?, ?> task = queues.get(i).poll();
+                if (task != null) {
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        private boolean isEmpty() {
+            return queues.stream().allMatch(Queue::isEmpty);
+        }
+
+        public int size() {
+            return queues.stream().mapToInt(Queue::size).sum();
+        }
+
+        private void add(Task<?, ?> task) {
+            queues.get(task.priority.ordinal()).add(task);
+            if (closed) {
+                cancelQueued();
+            } else if (idle.get() > 0) {
                 synchronized (this) {
-                    if (taskException == null) {
-                        taskException = runtimeException;
-                    } else {
-                        taskException.addSuppressed(runtimeException);
+                    notifyAll();
+                }
+            }
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Wakes idle workers so that they exit and cancels queued tasks. Tasks added afterwards are cancelled at once,
+         * so their callers do not wait for workers that are gone.
+         */
+        public void close() {
+            closed = true;
+            synchronized (this) {
+                notifyAll();
+            }
+            cancelQueued();
+        }
+
+        private void cancelQueued() {
+            Task<?, ?> task;
+            while ((task = poll()) != null) {
+                task.cancel(new CancellationException("Mapper is closed"));
+            }
+        }
+
+        @Override
+        public void claimed(Task<?, ?> task) {
+            add(task);
+        }
+
+        @Override
+        public void resume(Task<?, ?> task, int workers) {
+            add(task);
+        }
+    }
+
+    private static class Task<T, R> {
+        private final List<? extends T> args;
+        private final Function<? super T, ? extends R> f;
+        private final int maxBatchSize;
+        private final int weight;
+        private volatile int batchSize = 1;
+        private final MapOptions.Priority priority;
+        private final Results<R> results;
+        private final Scheduler scheduler;
+        private final MapperMetrics metrics;
+        private final long submitted = System.nanoTime();
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger parked = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private volatile boolean failed;
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> timeout;
+
+        public Task(List<? extends T> args, Function<? super T, ? extends R> f, int maxBatchSize, int weight,
+                    MapOptions.Priority priority, Results<R> results, Scheduler scheduler, MapperMetrics metrics) {
+            this.args = args;
+            this.f = f;
+            this.maxBatchSize = maxBatchSize;
+            this.weight = weight;
+            this.priority = priority;
+            this.results = results;
+            this.scheduler = scheduler;
+            this.metrics = metrics;
+            remaining = new AtomicInteger(args.size());
+        }
+
+        /**
+         * Claims and runs next batch of elements.
+         * Batch size starts from one element and is adjusted so that a batch takes about {@link #TURN_NANOS},
+         * which bounds the time other calls wait for their turn. {@code weight} batches are claimed at once.
+         * Returns {@code false} if there are no elements that may be claimed now.
+         */
+        public boolean runBatch() {
+            int from;
+            int to;
+            do {
+                from = next.get();
+                if (from >= args.size()) {
+                    return false;
+                }
+                int limit = Math.min(args.size(), results.claimLimit());
+                if (from >= limit) {
+                    park();
+                    return false;
+                }
+                to = from + (int) Math.min(limit - from, (long) batchSize * weight);
+            } while (!next.compareAndSet(from, to));
+            if (to < args.size()) {
+                scheduler.claimed(this);
+            }
+            if (from == 0) {
+                metrics.recordStarted(System.nanoTime() - submitted);
+            }
+            metrics.recordClaimed(to - from);
+            long start = System.nanoTime();
+            int done = from;
+            while (done < to && !cancelled) {
+                calculate(done++);
+            }
+            if (done > from) {
+                adjustBatchSize((System.nanoTime() - start) / (done - from) * batchSize);
+            }
+            finish(to - from);
+            return true;
+        }
+
+        private void adjustBatchSize(long batchNanos) {
+            int size = batchSize;
+            if (batchNanos < TURN_NANOS / 2 && size < maxBatchSize) {
+                batchSize = Math.min(maxBatchSize, size * 2);
+            } else if (batchNanos > TURN_NANOS * 2 && size > 1) {
+                batchSize = size / 2;
+            }
+        }
+
+        /**
+         * Drops all elements that are not claimed yet, stops running batches before their next element
+         * and fails the task with the given exception. Running elements are not interrupted,
+         * since workers of the pool are shared with other calls.
+         */
+        public void cancel(RuntimeException e) {
+            if (cancelled || remaining.get() == 0) {
+                return;
+            }
+            failed = true;
+            results.cancel(e);
+            cancelled = true;
+            int from = next.getAndUpdate(index -> Math.max(index, args.size()));
+            if (from < args.size()) {
+                metrics.recordClaimed(args.size() - from);
+                finish(args.size() - from);
+            }
+            resume();
+        }
+
+        private void finish(int elements) {
+            if (remaining.addAndGet(-elements) == 0) {
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                metrics.recordCompleted(System.nanoTime() - submitted, failed);
+                results.complete();
+            }
+        }
+
+        private void calculate(int index) {
+            R value;
+            try {
+                value = f.apply(args.get(index));
+            } catch (RuntimeException runtimeException) {
+                failed = true;
+                metrics.recordElementFailed();
+                results.fail(index, runtimeException);
+                if (results.isFailFast()) {
+                    cancel(runtimeException);
+                }
+                return;
+            }
+            results.set(index, value);
+        }
+
+        /**
+         * Whether there are elements that are not claimed yet.
+         */
+        public boolean hasUnclaimed() {
+            return next.get() < args.size();
+        }
+
+        /**
+         * Whether there are elements that may not be claimed until the consumer takes results.
+         */
+        public boolean isParked() {
+            int from = next.get();
+            return from < args.size() && from >= results.claimLimit();
+        }
+
+        private void park() {
+            parked.incrementAndGet();
+            if (next.get() < results.claimLimit()) {
+                resume();
+            }
+        }
+
+        /**
+         * Resumes workers that left the task because the consumer did not take results.
+         */
+        public void resume() {
+            int workers = parked.getAndSet(0);
+            if (workers > 0) {
+                scheduler.resume(this, workers);
+            }
+        }
+    }
+
+    private interface Results<R> {
+        void set(int index, R value);
+
+        void fail(int index, RuntimeException e);
+
+        /**
+         * Called when elements that are not started yet are dropped.
+         */
+        void cancel(RuntimeException e);
+
+        /**
+         * Called once all elements are set, failed or dropped.
+         */
+        default void complete() {
+        }
+
+        /**
+         * Elements with indices less than the limit may be started.
+         */
+        int claimLimit();
+
+        /**
+         * Whether the first failed element should cancel the rest of the task.
+         */
+        default boolean isFailFast() {
+            return false;
+        }
+    }
+
+    private static class ListResults<R> implements Results<R> {
+        private final Object[] mapped;
+        private final CompletableFuture<List<R>> future = new CompletableFuture<>();
+        private RuntimeException taskException;
+
+        public ListResults(int size) {
+            mapped = new Object[size];
+            if (size == 0) {
+                future.complete(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void set(int index, R value) {
+            mapped[index] = value;
+        }
+
+        @Override
+        public void cancel(RuntimeException e) {
+            fail(-1, e);
+        }
+
+        @Override
+        public void fail(int index, RuntimeException e) {
+            synchronized (this) {
+                if (taskException != null) {
+                    if (taskException != e) {
+                        taskException.addSuppressed(e);
                     }
+                    return;
+                }
+                taskException = e;
+            }
+            future.completeExceptionally(e);
+        }
+
+        @Override
+        public int claimLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public boolean isFailFast() {
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void complete() {
+            synchronized (this) {
+                if (taskException != null) {
+                    return;
                 }
             }
-            decreaseCounter();
+            future.complete((List<R>) Arrays.asList(mapped));
+        }
+
+        public List<R> get() throws InterruptedException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+    }
+
+    private static class Failure {
+        private final RuntimeException exception;
+
+        private Failure(RuntimeException exception) {
+            this.exception = exception;
+        }
+    }
+
+    private abstract static class StreamResults<R> implements Results<R>, ResultStream<R> {
+        protected final static Object NULL = new Object();
+        protected final int size;
+        protected final int bufferSize;
+        protected volatile int taken;
+        protected RuntimeException cancelled;
+        private volatile Task<?, R> task;
+
+        protected StreamResults(int size, int bufferSize) {
+            this.size = size;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public void set(int index, R value) {
+            put(index, value == null ? NULL : value);
+        }
+
+        @Override
+        public void fail(int index, RuntimeException e) {
+            put(index, new Failure(e));
+        }
+
+        @Override
+        public synchronized void cancel(RuntimeException e) {
+            if (cancelled == null) {
+                cancelled = e;
+            }
+            notifyAll();
+        }
+
+        protected abstract void put(int index, Object value);
+
+        protected abstract Object take() throws InterruptedException;
+
+        @Override
+        public int claimLimit() {
+            return (int) Math.min(Integer.MAX_VALUE, (long) taken + bufferSize);
         }
 
-        private synchronized void decreaseCounter() {
-            counter--;
-            if (counter == 0) {
-                notify();
+        @Override
+        public boolean hasNext() {
+            return taken < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public R next() throws InterruptedException {
+            Object value;
+            synchronized (this) {
+                if (taken >= size) {
+                    throw new NoSuchElementException("All results are already taken");
+                }
+                value = take();
+                taken++;
+            }
+            task.resume();
+            if (value instanceof Failure) {
+                throw ((Failure) value).exception;
             }
+            return value == NULL ? null : (R) value;
+        }
+    }
+
+    /**
+     * Results in order of arguments. Only elements within {@code bufferSize} from the next result to take
+     * are started, so results fit into a ring buffer.
+     */
+    private static class OrderedResults<R> extends StreamResults<R> {
+        private final Object[] buffer;
+
+        public OrderedResults(int size, int bufferSize) {
+            super(size, bufferSize);
+            buffer = new Object[Math.max(1, Math.min(size, bufferSize))];
+        }
+
+        @Override
+        protected synchronized void put(int index, Object value) {
+            buffer[index % buffer.length] = value;
+            notifyAll();
         }
 
-        public synchronized List<R> getResult() throws InterruptedException, RuntimeException {
-            while (counter != 0) {
+        @Override
+        protected Object take() throws InterruptedException {
+            int slot = taken % buffer.length;
+            while (buffer[slot] == null) {
+                if (cancelled != null) {
+                    throw cancelled;
+                }
                 wait();
             }
-            if (taskException != null) {
-                throw taskException;
+            Object value = buffer[slot];
+            buffer[slot] = null;
+            return value;
+        }
+    }
+
+    /**
+     * Results in order of completion. At most {@code bufferSize} elements are started and not taken.
+     */
+    private static class UnorderedResults<R> extends StreamResults<R> {
+        private final Queue<Object> completed = new ArrayDeque<>();
+
+        public UnorderedResults(int size, int bufferSize) {
+            super(size, bufferSize);
+        }
+
+        @Override
+        protected synchronized void put(int index, Object value) {
+            completed.add(value);
+            notifyAll();
+        }
+
+        @Override
+        protected Object take() throws InterruptedException {
+            while (completed.isEmpty()) {
+                if (cancelled != null) {
+                    throw cancelled;
+                }
+                wait();
             }
-            return mapped;
+            return completed.poll();
         }
     }
 }
@@ -0,0 +1,274 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel operations on primitive arrays.
+ * <p>
+ * Values are split into contiguous ranges, one per thread, and every range is processed by a plain loop,
+ * so no values are boxed. Only per-range results are combined, in order of ranges.
+ */
+public class PrimitiveParallelism {
+    private final ParallelMapper mapper;
+
+    public PrimitiveParallelism() {
+        mapper = null;
+    }
+
+    public PrimitiveParallelism(ParallelMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public long sum(int threads, int[] values) throws InterruptedException {
+        return rangeOperation(threads, values.length, (from, to) -> {
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            return sum;
+        }).stream().mapToLong(Long::longValue).sum();
+    }
+
+    public long sum(int threads, long[] values) throws InterruptedException {
+        return reduce(threads, values, 0, Long::sum);
+    }
+
+    public double sum(int threads, double[] values) throws InterruptedException {
+        return reduce(threads, values, 0, Double::sum);
+    }
+
+    public int reduce(int threads, int[] values, int identity, IntBinaryOperator operator) throws InterruptedException {
+        List<Integer> results = rangeOperation(threads, values.length, (from, to) -> {
+            int result = identity;
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsInt(result, values[i]);
+            }
+            return result;
+        });
+        int result = identity;
+        for (int value : results) {
+            result = operator.applyAsInt(result, value);
+        }
+        return result;
+    }
+
+    public long reduce(int threads, long[] values, long identity, LongBinaryOperator operator) throws InterruptedException {
+        List<Long> results = rangeOperation(threads, values.length, (from, to) -> {
+            long result = identity;
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsLong(result, values[i]);
+            }
+            return result;
+        });
+        long result = identity;
+        for (long value : results) {
+            result = operator.applyAsLong(result, value);
+        }
+        return result;
+    }
+
+    public double reduce(int threads, double[] values, double identity, DoubleBinaryOperator operator) throws InterruptedException {
+        List<Double> results = rangeOperation(threads, values.length, (from, to) -> {
+            double result = identity;
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsDouble(result, values[i]);
+            }
+            return result;
+        });
+        double result = identity;
+        for (double value : results) {
+            result = operator.applyAsDouble(result, value);
+        }
+        return result;
+    }
+
+    public OptionalInt minimum(int threads, int[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalInt.empty() : OptionalInt.of(reduce(threads, values, Integer.MAX_VALUE, Math::min));
+    }
+
+    public OptionalLong minimum(int threads, long[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalLong.empty() : OptionalLong.of(reduce(threads, values, Long.MAX_VALUE, Math::min));
+    }
+
+    public OptionalDouble minimum(int threads, double[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(reduce(threads, values, Double.POSITIVE_INFINITY, Math::min));
+    }
+
+    public OptionalInt maximum(int threads, int[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalInt.empty() : OptionalInt.of(reduce(threads, values, Integer.MIN_VALUE, Math::max));
+    }
+
+    public OptionalLong maximum(int threads, long[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalLong.empty() : OptionalLong.of(reduce(threads, values, Long.MIN_VALUE, Math::max));
+    }
+
+    public OptionalDouble maximum(int threads, double[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(reduce(threads, values, Double.NEGATIVE_INFINITY, Math::max));
+    }
+
+    public int count(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        return count(threads, values.length, i -> predicate.test(values[i]));
+    }
+
+    public int count(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        return count(threads, values.length, i -> predicate.test(values[i]));
+    }
+
+    public int count(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return count(threads, values.length, i -> predicate.test(values[i]));
+    }
+
+    private int count(int threads, int length, IntPredicate matches) throws InterruptedException {
+        return rangeOperation(threads, length, (from, to) -> {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (matches.test(i)) {
+                    count++;
+                }
+            }
+            return count;
+        }).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public int[] filter(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        List<int[]> results = rangeOperation(threads, values.length, (from, to) -> {
+            int[] result = new int[to - from];
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    result[size++] = values[i];
+                }
+            }
+            return Arrays.copyOf(result, size);
+        });
+        int[] result = new int[results.stream().mapToInt(part -> part.length).sum()];
+        int position = 0;
+        for (int[] part : results) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        return result;
+    }
+
+    public long[] filter(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        List<long[]> results = rangeOperation(threads, values.length, (from, to) -> {
+            long[] result = new long[to - from];
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    result[size++] = values[i];
+                }
+            }
+            return Arrays.copyOf(result, size);
+        });
+        long[] result = new long[results.stream().mapToInt(part -> part.length).sum()];
+        int position = 0;
+        for (long[] part : results) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        return result;
+    }
+
+    public double[] filter(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        List<double[]> results = rangeOperation(threads, values.length, (from, to) -> {
+            double[] result = new double[to - from];
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    result[size++] = values[i];
+                }
+            }
+            return Arrays.copyOf(result, size);
+        });
+        double[] result = new double[results.stream().mapToInt(part -> part.length).sum()];
+        int position = 0;
+        for (double[] part : results) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        return result;
+    }
+
+    public int[] map(int threads, int[] values, IntUnaryOperator f) throws InterruptedException {
+        int[] result = new int[values.length];
+        rangeOperation(threads, values.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = f.applyAsInt(values[i]);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    public long[] map(int threads, long[] values, LongUnaryOperator f) throws InterruptedException {
+        long[] result = new long[values.length];
+        rangeOperation(threads, values.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = f.applyAsLong(values[i]);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    public double[] map(int threads, double[] values, DoubleUnaryOperator f) throws InterruptedException {
+        double[] result = new double[values.length];
+        rangeOperation(threads, values.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = f.applyAsDouble(values[i]);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    private interface RangeFunction<R> {
+        R apply(int from, int to);
+    }
+
+    private <R> List<R> rangeOperation(int threads, int length, RangeFunction<R> function) throws InterruptedException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be greater or equal to 1");
+        }
+        int ranges = Math.min(threads, length);
+        if (ranges == 0) {
+            return Collections.emptyList();
+        }
+        IntFunction<R> rangeFunction = range -> function.apply(
+                (int) ((long) length * range / ranges), (int) ((long) length * (range + 1) / ranges));
+        if (mapper != null) {
+            return mapper.map(rangeFunction::apply, IntStream.range(0, ranges).boxed().collect(Collectors.toList()));
+        }
+        List<R> results = new ArrayList<>(Collections.nCopies(ranges, null));
+        List<RuntimeException> exceptions = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threadList = new ArrayList<>();
+        for (int i = 0; i < ranges; i++) {
+            final int range = i;
+            threadList.add(new Thread(() -> {
+                try {
+                    results.set(range, rangeFunction.apply(range));
+                } catch (RuntimeException e) {
+                    exceptions.add(e);
+                }
+            }));
+        }
+        threadList.forEach(Thread::start);
+        IterativeParallelism.joinAll(threadList);
+        if (!exceptions.isEmpty()) {
+            RuntimeException exception = exceptions.get(0);
+            for (RuntimeException e : exceptions.subList(1, exceptions.size())) {
+                if (e != exception) {
+                    exception.addSuppressed(e);
+                }
+            }
+            throw exception;
+        }
+        return results;
+    }
+}
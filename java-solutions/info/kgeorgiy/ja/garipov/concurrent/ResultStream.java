@@ -0,0 +1,23 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Results of a streaming map, delivered one by one as they are computed.
+ *
+ * @param <R> type of results
+ */
+public interface ResultStream<R> {
+    /**
+     * Returns {@code true} if there are results that are not taken yet.
+     */
+    boolean hasNext();
+
+    /**
+     * Waits for the next result and takes it.
+     *
+     * @throws RuntimeException if mapping of this element failed
+     * @throws NoSuchElementException if all results are already taken
+     */
+    R next() throws InterruptedException;
+}
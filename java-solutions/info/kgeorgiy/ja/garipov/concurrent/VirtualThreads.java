@@ -0,0 +1,44 @@
+package info.kgeorgiy.ja.garipov.concurrent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads of the running JVM.
+ * <p>
+ * Sources are kept compatible with Java 11, so the virtual thread factory is looked up reflectively.
+ * On JVMs without virtual threads, daemon platform threads are created instead.
+ */
+public final class VirtualThreads {
+    private final static ThreadFactory VIRTUAL_FACTORY = lookupFactory();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    public static ThreadFactory factory() {
+        if (VIRTUAL_FACTORY != null) {
+            return VIRTUAL_FACTORY;
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ThreadFactory lookupFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // preview API is disabled
+            return null;
+        }
+    }
+}
@@ -14,30 +14,32 @@ import java.util.stream.IntStream;
 import static info.kgeorgiy.ja.garipov.hello.UDPUtils.closeExecutorService;
 
 public class HelloUDPServer implements HelloServer {
+    private final static byte[] RESPONSE_PREFIX = "Hello, ".getBytes(StandardCharsets.UTF_8);
     private DatagramSocket socket;
     private ExecutorService service;
 
     @Override
     public void start(int port, int threads) {
+        int receiveBufferSize;
         try {
             socket = new DatagramSocket(port);
+            receiveBufferSize = socket.getReceiveBufferSize();
         } catch (SocketException e) {
             System.err.println("An error occurred : " + e);
             return;
         }
         service = Executors.newFixedThreadPool(threads);
         IntStream.range(0, threads).forEach(i -> service.submit(() -> {
+            // Request is received right after the prefix, so the buffer holds the response as is
+            byte[] buf = new byte[RESPONSE_PREFIX.length + receiveBufferSize];
+            System.arraycopy(RESPONSE_PREFIX, 0, buf, 0, RESPONSE_PREFIX.length);
+            DatagramPacket packet = new DatagramPacket(buf, RESPONSE_PREFIX.length, receiveBufferSize);
             while(!socket.isClosed()) {
                 try {
-                    byte[] buf = new byte[socket.getReceiveBufferSize()];
-                    DatagramPacket receivedPacket = new DatagramPacket(buf, buf.length);
-                    socket.receive(receivedPacket);
-                    String request = new String(receivedPacket.getData(), receivedPacket.getOffset(),
-                            receivedPacket.getLength(), StandardCharsets.UTF_8);
-                    byte[] response = ("Hello, " + request).getBytes(StandardCharsets.UTF_8);
-                    DatagramPacket sendPacket = new DatagramPacket(response, response.length,
-                            receivedPacket.getSocketAddress());
-                    socket.send(sendPacket);
+                    packet.setData(buf, RESPONSE_PREFIX.length, receiveBufferSize);
+                    socket.receive(packet);
+                    packet.setData(buf, 0, RESPONSE_PREFIX.length + packet.getLength());
+                    socket.send(packet);
                 } catch (IOException e) {
                     System.err.println("An error occurred : " + e);
                 }
@@ -0,0 +1,68 @@
+package info.kgeorgiy.ja.garipov.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with power-of-two nanosecond buckets.
+ * <p>
+ * Recording is a single {@link LongAdder} increment, so it does not contend between threads.
+ */
+public class LatencyHistogram {
+    private final static int BUCKETS = Long.SIZE;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        buckets[BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1))].increment();
+        total.add(nanos);
+    }
+
+    /**
+     * Returns counts of durations in {@code [2^i, 2^(i+1))} nanoseconds for every {@code i}.
+     */
+    public long[] getCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Returns upper bound of the bucket containing the given percentile, in nanoseconds.
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = getCounts();
+        long count = 0;
+        for (long bucket : counts) {
+            count += bucket;
+        }
+        long threshold = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= threshold && seen > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (2L << i) - 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,158 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Finds groups of identical files.
+ * <p>
+ * Files are grouped by size first, then only size collisions are hashed by their first block,
+ * and only files that still collide are hashed completely.
+ */
+public class DuplicateFinder {
+    private final static int FIRST_BLOCK_SIZE = 1 << 12;
+
+    public static void find(String[] args) {
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args, HashAlgorithms.SHA256);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid arguments format : " + e.getMessage());
+            return;
+        }
+        List<String> unsupported = unsupportedOptions(options);
+        if (!unsupported.isEmpty()) {
+            System.err.println("Invalid arguments format : options " + String.join(", ", unsupported)
+                    + " are not supported when searching for duplicates");
+            return;
+        }
+        String output = options.getOutput();
+        if (!Walker.createOutputDirectory(output)) {
+            return;
+        }
+        SizeCollector collector = new SizeCollector();
+        try (ParallelFileTreeWalker treeWalker = options.getTraversalThreads() == 0
+                ? null : new ParallelFileTreeWalker(options.getTraversalThreads())) {
+            if (!Walker.walk(options.getInput(), Integer.MAX_VALUE, collector, (file, cause) ->
+                    System.err.println("[input error] File \"" + file + "\" is skipped : " + cause), treeWalker)) {
+                return;
+            }
+        }
+        HashAlgorithm algorithm = options.getAlgorithm();
+        ExecutorService hashers = Executors.newFixedThreadPool(options.getThreads());
+        try (HashPrinter printer = new HashPrinter(output, algorithm)) {
+            List<Group> groups = new ArrayList<>();
+            collector.bySize.forEach((size, files) -> {
+                if (files.size() > 1) {
+                    groups.add(new Group(size, null, files));
+                }
+            });
+            List<Group> firstBlock = refine(groups, file -> HashWritingFileVisitor.calculateHash(file, algorithm,
+                    FIRST_BLOCK_SIZE), hashers);
+            List<Group> duplicates = new ArrayList<>();
+            List<Group> partial = new ArrayList<>();
+            for (Group group : firstBlock) {
+                (group.size > FIRST_BLOCK_SIZE ? partial : duplicates).add(group);
+            }
+            duplicates.addAll(refine(partial, file -> HashWritingFileVisitor.calculateHash(file, algorithm), hashers));
+            for (int i = 0; i < duplicates.size(); i++) {
+                if (i > 0) {
+                    printer.printSeparator();
+                }
+                for (Path file : duplicates.get(i).files) {
+                    printer.print(file.toString(), duplicates.get(i).hash);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[output error] An error occurred while opening output file \"" + output + "\" : " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            hashers.shutdownNow();
+        }
+    }
+
+    private static List<String> unsupportedOptions(WalkOptions options) {
+        List<String> unsupported = new ArrayList<>();
+        if (options.getIndex() != null) {
+            unsupported.add("-index");
+        }
+        if (options.getTreeRangeSize() != 0) {
+            unsupported.add("-tree");
+        }
+        if (options.isWatch()) {
+            unsupported.add("-watch");
+        }
+        if (options.getMetricsPeriod() != -1) {
+            unsupported.add("-metrics");
+        }
+        return unsupported;
+    }
+
+    private static List<Group> refine(List<Group> groups, FileHasher hasher, ExecutorService hashers)
+            throws InterruptedException {
+        List<List<Future<byte[]>>> hashes = new ArrayList<>();
+        for (Group group : groups) {
+            List<Future<byte[]>> groupHashes = new ArrayList<>();
+            for (Path file : group.files) {
+                groupHashes.add(hashers.submit(() -> hasher.hash(file)));
+            }
+            hashes.add(groupHashes);
+        }
+        List<Group> refined = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            Group group = groups.get(i);
+            Map<ByteBuffer, List<Path>> byHash = new LinkedHashMap<>();
+            for (int j = 0; j < group.files.size(); j++) {
+                Path file = group.files.get(j);
+                try {
+                    byte[] hash = hashes.get(i).get(j).get();
+                    byHash.computeIfAbsent(ByteBuffer.wrap(hash), key -> new ArrayList<>()).add(file);
+                } catch (ExecutionException e) {
+                    System.err.println("[input error] An error occurred while reading from \"" + file + "\" : " + e.getCause());
+                }
+            }
+            byHash.forEach((hash, files) -> {
+                if (files.size() > 1) {
+                    refined.add(new Group(group.size, hash.array(), files));
+                }
+            });
+        }
+        return refined;
+    }
+
+    private static class Group {
+        private final long size;
+        private final byte[] hash;
+        private final List<Path> files;
+
+        Group(long size, byte[] hash, List<Path> files) {
+            this.size = size;
+            this.hash = hash;
+            this.files = files;
+        }
+    }
+
+    private static class SizeCollector extends SimpleFileVisitor<Path> {
+        private final Map<Long, List<Path>> bySize = new LinkedHashMap<>();
+        private final Set<String> visited = new HashSet<>();
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && visited.add(file.toString())) {
+                bySize.computeIfAbsent(attrs.size(), size -> new ArrayList<>()).add(file);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            System.err.println("[input error] An error occurred while processing file \"" + file + "\" : " + exc);
+            return FileVisitResult.CONTINUE;
+        }
+    }
+}
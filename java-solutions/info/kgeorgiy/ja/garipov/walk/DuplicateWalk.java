@@ -0,0 +1,7 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+public class DuplicateWalk {
+    public static void main(String[] args) {
+        DuplicateFinder.find(args);
+    }
+}
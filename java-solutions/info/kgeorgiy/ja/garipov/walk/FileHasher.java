@@ -0,0 +1,8 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface FileHasher {
+    byte[] hash(Path file) throws IOException;
+}
@@ -0,0 +1,230 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps walk output up to date after the initial walk.
+ * <p>
+ * Directories visited by the initial walk are registered with a {@link WatchService}.
+ * Events are debounced and coalesced by path, then affected files are rehashed
+ * and {@code added}, {@code changed} or {@code removed} records are printed.
+ */
+public class FileTreeWatcher implements AutoCloseable {
+    public final static String ADDED = "added";
+    public final static String CHANGED = "changed";
+    public final static String REMOVED = "removed";
+    private final static long DEBOUNCE_MILLIS = 200;
+    private final static long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> registered = new HashSet<>();
+    /**
+     * Watched files, with whether their hashes are printed as tree hashes, so removals are printed the same way.
+     */
+    private final Map<Path, Boolean> files = new HashMap<>();
+    private final HashPrinter printer;
+    private final HashIndex index;
+    private final TreeHasher treeHasher;
+    private final HashAlgorithm algorithm;
+
+    public FileTreeWatcher(HashPrinter printer, HashIndex index, TreeHasher treeHasher) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.printer = printer;
+        this.index = index;
+        this.treeHasher = treeHasher;
+        this.algorithm = printer.getAlgorithm();
+    }
+
+    /**
+     * Creates visitor for the initial walk that also registers visited directories.
+     */
+    public HashWritingFileVisitor createVisitor(ParallelHashWriter parallelWriter, WalkMetrics metrics) {
+        return new HashWritingFileVisitor(printer, parallelWriter, index, treeHasher, metrics) {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.put(file, isTree(attrs));
+                return super.visitFile(file, attrs);
+            }
+        };
+    }
+
+    private void register(Path dir) {
+        if (registered.add(dir)) {
+            try {
+                directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+            } catch (IOException e) {
+                registered.remove(dir);
+                System.err.println("[watch error] Cannot watch directory \"" + dir + "\" : " + e);
+            }
+        }
+    }
+
+    /**
+     * Processes events until the current thread is interrupted or the watcher is closed.
+     *
+     * @param indexFile file to save index to after every batch of changes, or {@code null}
+     */
+    public void watch(Path indexFile) {
+        try {
+            while (!Thread.interrupted()) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> overflowed = new LinkedHashSet<>();
+                long deadline = System.nanoTime() + MAX_DELAY_NANOS;
+                while (key != null) {
+                    collect(key, changed, overflowed);
+                    long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (left <= 0) {
+                        break;
+                    }
+                    key = watchService.poll(Math.min(DEBOUNCE_MILLIS, left), TimeUnit.MILLISECONDS);
+                }
+                overflowed.forEach(this::rescan);
+                changed.forEach(this::refresh);
+                printer.flush();
+                if (indexFile != null) {
+                    try {
+                        index.save();
+                    } catch (IOException e) {
+                        System.err.println("[index error] An error occurred while saving index \"" + indexFile + "\" : " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed, Set<Path> overflowed) {
+        Path dir = directories.get(key);
+        if (dir == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed.add(dir);
+            } else {
+                changed.add(dir.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+            registered.remove(dir);
+        }
+    }
+
+    private void refresh(Path path) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            remove(path);
+            return;
+        }
+        if (!attrs.isDirectory()) {
+            update(path, attrs);
+        } else if (!registered.contains(path)) {
+            rescan(path);
+        }
+    }
+
+    private void rescan(Path dir) {
+        Set<Path> seen = new HashSet<>();
+        try {
+            Files.walkFileTree(dir, Collections.singleton(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                            register(dir);
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            seen.add(file);
+                            update(file, attrs);
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                            System.err.println("[input error] An error occurred while processing file \"" + file + "\" : " + exc);
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            System.err.println("[process error] An error occurred while walking files " + e);
+            return;
+        }
+        List<Path> removed = new ArrayList<>();
+        for (Path file : files.keySet()) {
+            if (file.startsWith(dir) && !seen.contains(file)) {
+                removed.add(file);
+            }
+        }
+        Collections.sort(removed);
+        removed.forEach(this::removeFile);
+    }
+
+    private void update(Path file, BasicFileAttributes attrs) {
+        byte[] previous = index.get(file);
+        boolean tree = isTree(attrs);
+        byte[] hash;
+        try {
+            hash = index.hash(file, attrs, tree ? treeHasher : path -> HashWritingFileVisitor.calculateHash(path, algorithm));
+        } catch (IOException e) {
+            System.err.println("[input error] An error occurred while reading from \"" + file + "\" : " + e);
+            return;
+        }
+        files.put(file, tree);
+        if (previous == null) {
+            printer.print(ADDED, file.toString(), hash, tree);
+        } else if (!Arrays.equals(previous, hash)) {
+            printer.print(CHANGED, file.toString(), hash, tree);
+        }
+    }
+
+    private void remove(Path path) {
+        List<Path> removed = new ArrayList<>();
+        for (Path file : files.keySet()) {
+            if (file.startsWith(path)) {
+                removed.add(file);
+            }
+        }
+        Collections.sort(removed);
+        removed.forEach(this::removeFile);
+        registered.removeIf(dir -> dir.startsWith(path));
+    }
+
+    private void removeFile(Path file) {
+        byte[] hash = index.get(file);
+        boolean tree = Boolean.TRUE.equals(files.remove(file));
+        index.remove(file);
+        printer.print(REMOVED, file.toString(), hash == null ? algorithm.getErrorHash() : hash, tree);
+    }
+
+    private boolean isTree(BasicFileAttributes attrs) {
+        return treeHasher != null && treeHasher.accepts(attrs.size());
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("[watch error] An error occurred while closing watch service : " + e);
+        }
+    }
+}
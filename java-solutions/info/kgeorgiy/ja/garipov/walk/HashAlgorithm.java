@@ -0,0 +1,38 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hash algorithm usable by the walk tools.
+ * <p>
+ * Additional algorithms may be provided through {@link java.util.ServiceLoader}.
+ */
+public interface HashAlgorithm {
+    /**
+     * Name used to select the algorithm from the command line.
+     */
+    String getName();
+
+    /**
+     * Length of the digest in bytes.
+     */
+    int getLength();
+
+    Hasher newHasher();
+
+    /**
+     * Hash written for files that cannot be read.
+     */
+    default byte[] getErrorHash() {
+        return new byte[getLength()];
+    }
+
+    interface Hasher {
+        /**
+         * Consumes all remaining bytes of {@code buffer}.
+         */
+        void update(ByteBuffer buffer);
+
+        byte[] digest();
+    }
+}
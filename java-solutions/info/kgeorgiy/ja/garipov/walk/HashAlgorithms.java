@@ -0,0 +1,140 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+public enum HashAlgorithms implements HashAlgorithm {
+    PJW("pjw", Long.BYTES) {
+        @Override
+        public Hasher newHasher() {
+            return new PjwHasher();
+        }
+    },
+    CRC32C("crc32c", Integer.BYTES) {
+        @Override
+        public Hasher newHasher() {
+            return new Crc32cHasher();
+        }
+    },
+    XXHASH64("xxhash64", Long.BYTES) {
+        @Override
+        public Hasher newHasher() {
+            return new XxHash64();
+        }
+    },
+    SHA256("sha256", 32) {
+        @Override
+        public Hasher newHasher() {
+            return new MessageDigestHasher("SHA-256");
+        }
+    };
+
+    public static final HashAlgorithm DEFAULT = PJW;
+    private final String name;
+    private final int length;
+
+    HashAlgorithms(String name, int length) {
+        this.name = name;
+        this.length = length;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    public static HashAlgorithm forName(String name) {
+        for (HashAlgorithms algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        for (HashAlgorithm algorithm : ServiceLoader.load(HashAlgorithm.class)) {
+            if (algorithm.getName().equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("unknown hash algorithm " + name + ", available : "
+                + Arrays.stream(values()).map(HashAlgorithm::getName).collect(Collectors.joining(", ")));
+    }
+
+    static byte[] toBytes(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static class PjwHasher implements Hasher {
+        private long hash;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            long hash = this.hash;
+            final int limit = buffer.limit();
+            for (int i = buffer.position(); i < limit; i++) {
+                hash = (hash << 8) + (buffer.get(i) & 0xff);
+                long left = hash & 0xFF_00_000_000_000_000L;
+                if (left != 0) {
+                    hash ^= (left >> 48);
+                    hash &= (~left);
+                }
+            }
+            buffer.position(limit);
+            this.hash = hash;
+        }
+
+        @Override
+        public byte[] digest() {
+            return toBytes(hash, Long.BYTES);
+        }
+    }
+
+    private static class Crc32cHasher implements Hasher {
+        private final CRC32C crc = new CRC32C();
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            crc.update(buffer);
+        }
+
+        @Override
+        public byte[] digest() {
+            return toBytes(crc.getValue(), Integer.BYTES);
+        }
+    }
+
+    private static class MessageDigestHasher implements Hasher {
+        private final MessageDigest digest;
+
+        MessageDigestHasher(String algorithm) {
+            try {
+                digest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Required algorithm " + algorithm + " is not available", e);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            digest.update(buffer);
+        }
+
+        @Override
+        public byte[] digest() {
+            return digest.digest();
+        }
+    }
+}
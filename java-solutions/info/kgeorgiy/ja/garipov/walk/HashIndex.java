@@ -0,0 +1,171 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk index of file hashes from previous runs.
+ * <p>
+ * A file is not rehashed if its size, modification time and file key match the stored ones.
+ * The index is read through a memory-mapped buffer and replaced atomically by {@link #save()}.
+ */
+public class HashIndex {
+    private final static int MAGIC = 0x57484958;
+    private final static int VERSION = 2;
+    private final Path indexFile;
+    private final HashAlgorithm algorithm;
+    private final String format;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private HashIndex(Path indexFile, HashAlgorithm algorithm, String format, Map<String, Entry> previous) {
+        this.indexFile = indexFile;
+        this.algorithm = algorithm;
+        this.format = format;
+        this.previous = previous;
+    }
+
+    /**
+     * Creates an empty index. Hashes in an index are only reused while {@code format}
+     * (the algorithm and the way it is applied) stays the same.
+     */
+    public static HashIndex empty(Path indexFile, HashAlgorithm algorithm, String format) {
+        return new HashIndex(indexFile, algorithm, format, Map.of());
+    }
+
+    public static HashIndex load(Path indexFile, HashAlgorithm algorithm, String format) throws IOException {
+        if (Files.notExists(indexFile)) {
+            return empty(indexFile, algorithm, format);
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Index file is too large : " + size + " bytes");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unsupported index file format");
+            }
+            if (!readString(buffer).equals(format)) {
+                return empty(indexFile, algorithm, format);
+            }
+            int count = buffer.getInt();
+            Map<String, Entry> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String path = readString(buffer);
+                long fileSize = buffer.getLong();
+                long modified = buffer.getLong();
+                String fileKey = readString(buffer);
+                byte[] hash = readBytes(buffer, algorithm.getLength());
+                entries.put(path, new Entry(fileSize, modified, fileKey, hash));
+            }
+            return new HashIndex(indexFile, algorithm, format, entries);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Index file is corrupted", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        return new String(readBytes(buffer, buffer.getInt()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Index file is corrupted");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    public byte[] hash(Path file, BasicFileAttributes attrs, FileHasher hasher) throws IOException {
+        String key = key(file);
+        Entry entry = new Entry(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                attrs.fileKey() == null ? "" : attrs.fileKey().toString(), null);
+        Entry stored = current.getOrDefault(key, previous.get(key));
+        if (stored == null || !stored.matches(entry)) {
+            stored = new Entry(entry.size, entry.modified, entry.fileKey, hasher.hash(file));
+        }
+        current.put(key, stored);
+        return stored.hash;
+    }
+
+    /**
+     * Returns hash of {@code file} recorded during this run, or {@code null} if there is none.
+     */
+    public byte[] get(Path file) {
+        Entry entry = current.get(key(file));
+        return entry == null ? null : entry.hash;
+    }
+
+    public void remove(Path file) {
+        current.remove(key(file));
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    public void save() throws IOException {
+        Path parent = indexFile.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(parent, indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeString(output, format);
+                output.writeInt(current.size());
+                for (Map.Entry<String, Entry> entry : current.entrySet()) {
+                    writeString(output, entry.getKey());
+                    output.writeLong(entry.getValue().size);
+                    output.writeLong(entry.getValue().modified);
+                    writeString(output, entry.getValue().fileKey);
+                    output.write(entry.getValue().hash);
+                }
+                output.flush();
+                // Otherwise the rename may reach the disk before the data and leave a truncated index after a crash
+                channel.force(true);
+            }
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private final byte[] hash;
+
+        Entry(long size, long modified, String fileKey, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        boolean matches(Entry other) {
+            return size == other.size && modified == other.modified && fileKey.equals(other.fileKey);
+        }
+    }
+}
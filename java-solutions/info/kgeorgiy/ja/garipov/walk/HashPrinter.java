@@ -0,0 +1,97 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+public class HashPrinter implements AutoCloseable {
+    private final static int BUFFER_SIZE = 1 << 16;
+    private final static long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private final String outputFilename;
+    private final HashAlgorithm algorithm;
+    private final BufferedWriter writer;
+    private long lastFlush;
+
+    public HashPrinter(String outputFilename, HashAlgorithm algorithm) throws IOException {
+        this.outputFilename = outputFilename;
+        this.algorithm = algorithm;
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(Path.of(outputFilename), StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.lastFlush = System.nanoTime();
+    }
+
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void print(String file, byte[] hash) {
+        print(file, hash, false);
+    }
+
+    public void print(String file, byte[] hash, boolean tree) {
+        print(null, file, hash, tree);
+    }
+
+    public synchronized void print(String kind, String file, byte[] hash, boolean tree) {
+        try {
+            if (kind != null) {
+                writer.write(kind);
+                writer.write(' ');
+            }
+            if (tree) {
+                writer.write(TreeHasher.MARKER);
+            }
+            for (byte b : hash) {
+                writer.write(HEX_DIGITS[(b >> 4) & 0xF]);
+                writer.write(HEX_DIGITS[b & 0xF]);
+            }
+            writer.write(' ');
+            writer.write(file);
+            writer.newLine();
+            long now = System.nanoTime();
+            if (now - lastFlush >= FLUSH_INTERVAL_NANOS) {
+                writer.flush();
+                lastFlush = now;
+            }
+        } catch (IOException e) {
+            printError(e);
+        }
+    }
+
+    public synchronized void printSeparator() {
+        try {
+            writer.newLine();
+        } catch (IOException e) {
+            printError(e);
+        }
+    }
+
+    public synchronized void flush() {
+        try {
+            writer.flush();
+            lastFlush = System.nanoTime();
+        } catch (IOException e) {
+            printError(e);
+        }
+    }
+
+    private void printError(IOException e) {
+        System.err.println("[output error] An error occurred while writing to \"" + outputFilename + "\" : " + e);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            printError(e);
+        }
+    }
+}
@@ -1,53 +1,152 @@
 package info.kgeorgiy.ja.garipov.walk;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 
 public class HashWritingFileVisitor extends SimpleFileVisitor<Path> {
-    private final String outputFilename;
-    public final static int HASH_LENGTH = 16;
-    public final static String stringFormat = "%016x";
+    private final HashPrinter printer;
+    private final ParallelHashWriter parallelWriter;
+    private final HashIndex index;
+    private final HashAlgorithm algorithm;
+    private final TreeHasher treeHasher;
+    private final WalkMetrics metrics;
+    private final static int BUFFER_SIZE = 1 << 16;
+    private final static long MAP_THRESHOLD = 1 << 24;
+    private final static long MAP_REGION_SIZE = 1 << 30;
+    private final static ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
 
-    public HashWritingFileVisitor(String outputFilename) {
-        this.outputFilename = outputFilename;
+    public HashWritingFileVisitor(HashPrinter printer) {
+        this(printer, null, null, null, new WalkMetrics());
     }
 
-    @Override
-    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-        long hash = 0;
-        try (BufferedInputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
-            int inputInt;
-            while ((inputInt = inputStream.read()) != -1) {
-                byte inputByte = (byte) inputInt;
-                hash <<= 8;
-                hash += (inputByte & 0xff);
-                long left = hash & 0xFF_00_000_000_000_000L;
-                if (left != 0) {
-                    hash ^= (left >> 48);
-                    hash &= (~left);
-                }
+    public HashWritingFileVisitor(HashPrinter printer, ParallelHashWriter parallelWriter, HashIndex index,
+                                  TreeHasher treeHasher, WalkMetrics metrics) {
+        this.printer = printer;
+        this.parallelWriter = parallelWriter;
+        this.index = index;
+        this.algorithm = printer.getAlgorithm();
+        this.treeHasher = treeHasher;
+        this.metrics = metrics;
+    }
+
+    public static byte[] calculateHash(Path file, HashAlgorithm algorithm) throws IOException {
+        return calculateHash(file, algorithm, Long.MAX_VALUE);
+    }
+
+    public static byte[] calculateHash(Path file, HashAlgorithm algorithm, long limit) throws IOException {
+        return calculateHash(file, algorithm, limit, null);
+    }
+
+    /**
+     * Hashes at most {@code limit} first bytes of {@code file}.
+     * Bytes read and time spent opening and reading the file are recorded to {@code metrics}, if it is not {@code null}.
+     */
+    public static byte[] calculateHash(Path file, HashAlgorithm algorithm, long limit, WalkMetrics metrics)
+            throws IOException {
+        HashAlgorithm.Hasher hasher = algorithm.newHasher();
+        long start = System.nanoTime();
+        long ioWait;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ioWait = System.nanoTime() - start;
+            size = Math.min(channel.size(), limit);
+            if (size >= MAP_THRESHOLD) {
+                ioWait += hashMapped(channel, size, hasher);
+            } else {
+                ioWait += hashRead(channel, hasher, limit);
             }
+        }
+        if (metrics != null) {
+            metrics.recordRead(size, ioWait);
+        }
+        return hasher.digest();
+    }
+
+    private byte[] hash(Path file, BasicFileAttributes attrs, FileHasher hasher) {
+        long start = System.nanoTime();
+        try {
+            byte[] hash = index == null ? hasher.hash(file) : index.hash(file, attrs, hasher);
+            metrics.recordFile(System.nanoTime() - start);
+            return hash;
         } catch (NoSuchFileException e) {
             System.err.println("[input error] There is no such file \"" + file + "\" : " + e);
-            hash = 0;
+            metrics.recordError(e);
         } catch (IOException e) {
             System.err.println("[input error] An error occurred while reading from \"" + file + "\" : " + e);
-            hash = 0;
+            metrics.recordError(e);
         } catch (InvalidPathException e) {
             System.err.println("[input error] Invalid path \"" + file + "\" : " + e);
-            hash = 0;
+            metrics.recordError(e);
+        }
+        return algorithm.getErrorHash();
+    }
+
+    private static long hashRead(FileChannel channel, HashAlgorithm.Hasher hasher, long limit) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        long remaining = limit;
+        long ioWait = 0;
+        buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+        while (remaining > 0) {
+            long start = System.nanoTime();
+            int read = channel.read(buffer);
+            ioWait += System.nanoTime() - start;
+            if (read == -1) {
+                break;
+            }
+            buffer.flip();
+            remaining -= buffer.remaining();
+            hasher.update(buffer);
+            buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+        }
+        return ioWait;
+    }
+
+    private static long hashMapped(FileChannel channel, long size, HashAlgorithm.Hasher hasher) throws IOException {
+        long ioWait = 0;
+        for (long position = 0; position < size; position += MAP_REGION_SIZE) {
+            long start = System.nanoTime();
+            ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAP_REGION_SIZE, size - position));
+            ioWait += System.nanoTime() - start;
+            try {
+                hasher.update(region);
+            } catch (InternalError e) {
+                // Access to the part of mapping beyond the end of truncated file
+                throw new IOException("File was truncated while reading", e);
+            }
+        }
+        return ioWait;
+    }
+
+    public void writeFailed(String file, Exception cause) {
+        metrics.recordError(cause);
+        if (parallelWriter == null) {
+            printer.print(file, algorithm.getErrorHash(), false);
+        } else {
+            parallelWriter.submit(file, algorithm.getErrorHash());
+        }
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        boolean tree = treeHasher != null && treeHasher.accepts(attrs.size());
+        FileHasher hasher = tree ? treeHasher : path -> calculateHash(path, algorithm, Long.MAX_VALUE, metrics);
+        if (parallelWriter == null) {
+            printer.print(file.toString(), hash(file, attrs, hasher), tree);
+        } else {
+            parallelWriter.submit(file.toString(), () -> hash(file, attrs, hasher), tree);
         }
-        Walker.printOutput(outputFilename, file.toString(), hash);
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) {
         System.err.println("[input error] An error occurred while processing file \"" + file + "\" : " + exc);
-        Walker.printOutput(outputFilename, file.toString(), 0);
+        writeFailed(file.toString(), exc);
         return FileVisitResult.CONTINUE;
     }
 }
-
@@ -0,0 +1,337 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Walks file trees following links, listing directories concurrently on a {@link ForkJoinPool}.
+ * <p>
+ * The visitor is called only from the thread calling {@link #walk}, in the same order
+ * as {@link Files#walkFileTree} would call it, including handling of {@link FileVisitResult#SKIP_SUBTREE}
+ * and {@link FileVisitResult#SKIP_SIBLINGS}: directories that are skipped stop being listed.
+ * At most {@link #LISTINGS_PER_THREAD} directories per thread are listed ahead of the visitor,
+ * other directories are listed once the visitor reaches them.
+ * Directories being visited are kept in an explicit stack, so the depth of a tree is not limited by the thread stack.
+ */
+public class ParallelFileTreeWalker implements AutoCloseable {
+    private final static int LISTINGS_PER_THREAD = 16;
+    private final ForkJoinPool pool;
+
+    public ParallelFileTreeWalker(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be greater or equal to 1");
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    public void walk(Path start, int maxDepth, FileVisitor<Path> visitor) throws IOException {
+        Window window = new Window(pool, pool.getParallelism() * LISTINGS_PER_THREAD);
+        try {
+            Entry entry = readEntry(start, 0, maxDepth, null, window);
+            if (entry.directory != null) {
+                window.trySchedule(entry.directory);
+            }
+            visit(entry, window, visitor);
+        } finally {
+            window.aborted = true;
+        }
+    }
+
+    private static void visit(Entry start, Window window, FileVisitor<Path> visitor) throws IOException {
+        Deque<Frame> frames = new ArrayDeque<>();
+        FileVisitResult result = enter(start, window, visitor, frames);
+        while (!frames.isEmpty()) {
+            Frame frame = frames.peek();
+            List<Entry> entries = frame.listing.entries;
+            if (result == FileVisitResult.TERMINATE) {
+                return;
+            }
+            if (result == FileVisitResult.SKIP_SIBLINGS) {
+                discard(entries, frame.next, window);
+                frame.next = entries.size();
+            }
+            if (frame.next < entries.size()) {
+                // visited entries are dropped, so that their listings may be collected
+                result = enter(entries.set(frame.next++, null), window, visitor, frames);
+            } else {
+                frames.pop();
+                result = visitor.postVisitDirectory(frame.path, frame.listing.iterationException);
+                // as in Files.walkFileTree, siblings are not skipped after the directory is visited
+                if (result == FileVisitResult.SKIP_SIBLINGS) {
+                    result = FileVisitResult.CONTINUE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits a file, or pre-visits a directory and pushes its frame if its entries should be visited.
+     */
+    private static FileVisitResult enter(Entry entry, Window window, FileVisitor<Path> visitor, Deque<Frame> frames)
+            throws IOException {
+        if (entry.exception != null) {
+            return visitor.visitFileFailed(entry.path, entry.exception);
+        }
+        if (entry.directory == null) {
+            return visitor.visitFile(entry.path, entry.attrs);
+        }
+        Listing listing = window.take(entry.directory);
+        if (listing.openException != null) {
+            return visitor.visitFileFailed(entry.path, listing.openException);
+        }
+        FileVisitResult result = visitor.preVisitDirectory(entry.path, entry.attrs);
+        if (result != FileVisitResult.CONTINUE) {
+            discard(listing.entries, 0, window);
+            return result;
+        }
+        window.prefetch(listing.entries);
+        frames.push(new Frame(entry.path, listing));
+        return result;
+    }
+
+    /**
+     * Stops listing of skipped directories and takes back permits of the ones that are already scheduled.
+     */
+    private static void discard(List<Entry> entries, int from, Window window) {
+        Deque<List<Entry>> listings = new ArrayDeque<>();
+        List<Entry> skipped = entries.subList(from, entries.size());
+        while (skipped != null) {
+            for (Entry entry : skipped) {
+                DirectoryTask task = entry.directory;
+                if (task != null) {
+                    task.ancestor.skipped = true;
+                    if (task.scheduled) {
+                        listings.push(window.take(task).entries);
+                    }
+                }
+            }
+            skipped = listings.poll();
+        }
+    }
+
+    private static Entry readEntry(Path path, int depth, int maxDepth, Ancestor ancestor, Window window) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException suppressed) {
+                return Entry.failed(path, e);
+            }
+        }
+        if (!attrs.isDirectory() || depth >= maxDepth) {
+            return Entry.file(path, attrs);
+        }
+        if (isLoop(path, attrs, ancestor)) {
+            return Entry.failed(path, new FileSystemLoopException(path.toString()));
+        }
+        return Entry.directory(path, attrs,
+                new DirectoryTask(path, depth, maxDepth, new Ancestor(path, attrs.fileKey(), ancestor), window));
+    }
+
+    private static boolean isLoop(Path path, BasicFileAttributes attrs, Ancestor ancestor) {
+        Object key = attrs.fileKey();
+        for (; ancestor != null; ancestor = ancestor.parent) {
+            if (key != null && ancestor.fileKey != null) {
+                if (key.equals(ancestor.fileKey)) {
+                    return true;
+                }
+            } else {
+                try {
+                    if (Files.isSameFile(path, ancestor.path)) {
+                        return true;
+                    }
+                } catch (IOException | SecurityException ignored) {
+                    // not the same file
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Directories listed ahead of the visitor during a single walk. A permit is taken when listing is scheduled
+     * and returned when the visitor takes the listing.
+     */
+    private static class Window {
+        private final ForkJoinPool pool;
+        private final Semaphore permits;
+        private volatile boolean aborted;
+
+        Window(ForkJoinPool pool, int size) {
+            this.pool = pool;
+            permits = new Semaphore(size);
+        }
+
+        void trySchedule(DirectoryTask task) {
+            if (permits.tryAcquire()) {
+                task.scheduled = true;
+                pool.execute(task);
+            }
+        }
+
+        /**
+         * Schedules directories that were not scheduled when their parent was listed.
+         */
+        void prefetch(List<Entry> entries) {
+            for (Entry entry : entries) {
+                if (entry.directory != null && !entry.directory.scheduled) {
+                    trySchedule(entry.directory);
+                }
+            }
+        }
+
+        /**
+         * Returns listing of the task, listing the directory in the current thread if it was not scheduled.
+         */
+        Listing take(DirectoryTask task) {
+            if (!task.scheduled) {
+                return task.compute();
+            }
+            Listing listing = task.join();
+            permits.release();
+            return listing;
+        }
+    }
+
+    private static class DirectoryTask extends RecursiveTask<Listing> {
+        private static final long serialVersionUID = 1L;
+        private final Path directory;
+        private final int depth;
+        private final int maxDepth;
+        private final Ancestor ancestor;
+        private final Window window;
+        private boolean scheduled;
+
+        DirectoryTask(Path directory, int depth, int maxDepth, Ancestor ancestor, Window window) {
+            this.directory = directory;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.ancestor = ancestor;
+            this.window = window;
+        }
+
+        @Override
+        protected Listing compute() {
+            if (isSkipped()) {
+                return new Listing(List.of(), null, null);
+            }
+            DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(directory);
+            } catch (IOException e) {
+                return new Listing(List.of(), e, null);
+            }
+            List<Entry> entries = new ArrayList<>();
+            IOException iterationException = null;
+            try (stream) {
+                for (Path path : stream) {
+                    if (isSkipped()) {
+                        break;
+                    }
+                    Entry entry = readEntry(path, depth + 1, maxDepth, ancestor, window);
+                    if (entry.directory != null) {
+                        window.trySchedule(entry.directory);
+                    }
+                    entries.add(entry);
+                }
+            } catch (IOException e) {
+                iterationException = e;
+            } catch (DirectoryIteratorException e) {
+                iterationException = e.getCause();
+            }
+            return new Listing(entries, null, iterationException);
+        }
+
+        private boolean isSkipped() {
+            if (window.aborted) {
+                return true;
+            }
+            for (Ancestor directory = ancestor; directory != null; directory = directory.parent) {
+                if (directory.skipped) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Directory being visited, with the index of its next entry to visit.
+     */
+    private static class Frame {
+        private final Path path;
+        private final Listing listing;
+        private int next;
+
+        Frame(Path path, Listing listing) {
+            this.path = path;
+            this.listing = listing;
+        }
+    }
+
+    private static class Listing {
+        private final List<Entry> entries;
+        private final IOException openException;
+        private final IOException iterationException;
+
+        Listing(List<Entry> entries, IOException openException, IOException iterationException) {
+            this.entries = entries;
+            this.openException = openException;
+            this.iterationException = iterationException;
+        }
+    }
+
+    private static class Entry {
+        private final Path path;
+        private final BasicFileAttributes attrs;
+        private final IOException exception;
+        private final DirectoryTask directory;
+
+        private Entry(Path path, BasicFileAttributes attrs, IOException exception, DirectoryTask directory) {
+            this.path = path;
+            this.attrs = attrs;
+            this.exception = exception;
+            this.directory = directory;
+        }
+
+        static Entry file(Path path, BasicFileAttributes attrs) {
+            return new Entry(path, attrs, null, null);
+        }
+
+        static Entry failed(Path path, IOException exception) {
+            return new Entry(path, null, exception, null);
+        }
+
+        static Entry directory(Path path, BasicFileAttributes attrs, DirectoryTask directory) {
+            return new Entry(path, attrs, null, directory);
+        }
+    }
+
+    private static class Ancestor {
+        private final Path path;
+        private final Object fileKey;
+        private final Ancestor parent;
+        private volatile boolean skipped;
+
+        Ancestor(Path path, Object fileKey, Ancestor parent) {
+            this.path = path;
+            this.fileKey = fileKey;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.util.concurrent.*;
+
+public class ParallelHashWriter implements AutoCloseable {
+    private static final int PENDING_PER_THREAD = 64;
+    private static final PendingHash END = new PendingHash(null, null, false);
+    private final HashPrinter printer;
+    private final ExecutorService hashers;
+    private final BlockingQueue<PendingHash> pending;
+    private final Thread writer;
+
+    public ParallelHashWriter(HashPrinter printer, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be greater or equal to 1");
+        }
+        this.printer = printer;
+        this.hashers = Executors.newFixedThreadPool(threads);
+        this.pending = new ArrayBlockingQueue<>(threads * PENDING_PER_THREAD);
+        this.writer = new Thread(this::write);
+        writer.start();
+    }
+
+    public void submit(String file, Callable<byte[]> hasher, boolean tree) {
+        put(new PendingHash(file, hashers.submit(hasher), tree));
+    }
+
+    public void submit(String file, byte[] hash) {
+        put(new PendingHash(file, CompletableFuture.completedFuture(hash), false));
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    private void put(PendingHash hash) {
+        try {
+            pending.put(hash);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        try {
+            PendingHash hash;
+            while ((hash = pending.take()) != END) {
+                printer.print(hash.file, hash.get(printer.getAlgorithm()), hash.tree);
+            }
+        } catch (InterruptedException ignored) {
+            // closed
+        }
+    }
+
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pending.put(END);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        hashers.shutdownNow();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class PendingHash {
+        private final String file;
+        private final Future<byte[]> hash;
+        private final boolean tree;
+
+        PendingHash(String file, Future<byte[]> hash, boolean tree) {
+            this.file = file;
+            this.hash = hash;
+            this.tree = tree;
+        }
+
+        byte[] get(HashAlgorithm algorithm) throws InterruptedException {
+            try {
+                return hash.get();
+            } catch (ExecutionException e) {
+                System.err.println("[process error] An error occurred while hashing \"" + file + "\" : " + e.getCause());
+                return algorithm.getErrorHash();
+            }
+        }
+    }
+}
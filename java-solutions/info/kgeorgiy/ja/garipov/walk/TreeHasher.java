@@ -0,0 +1,120 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashes large files as a one-level tree.
+ * <p>
+ * A file is split into ranges of {@code rangeSize} bytes that are hashed concurrently with positional reads.
+ * The root hash is the hash of the range size followed by the hashes of all ranges in order.
+ */
+public class TreeHasher implements FileHasher, AutoCloseable {
+    public final static String MARKER = "tree:";
+    private final static int BUFFER_SIZE = 1 << 20;
+    private final static ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private final HashAlgorithm algorithm;
+    private final long rangeSize;
+    private final ExecutorService pool;
+    private final WalkMetrics metrics;
+
+    public TreeHasher(HashAlgorithm algorithm, long rangeSize, int threads) {
+        this(algorithm, rangeSize, threads, null);
+    }
+
+    /**
+     * Creates hasher that records bytes read and time spent reading every file to {@code metrics},
+     * if it is not {@code null}.
+     */
+    public TreeHasher(HashAlgorithm algorithm, long rangeSize, int threads, WalkMetrics metrics) {
+        if (rangeSize < 1) {
+            throw new IllegalArgumentException("Range size should be positive");
+        }
+        this.algorithm = algorithm;
+        this.rangeSize = rangeSize;
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.metrics = metrics;
+    }
+
+    public long getRangeSize() {
+        return rangeSize;
+    }
+
+    public boolean accepts(long size) {
+        return size > rangeSize;
+    }
+
+    @Override
+    public byte[] hash(Path file) throws IOException {
+        long open = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LongAdder ioWait = new LongAdder();
+            ioWait.add(System.nanoTime() - open);
+            long size = channel.size();
+            List<Future<byte[]>> ranges = new ArrayList<>();
+            for (long position = 0; position < size; position += rangeSize) {
+                final long start = position;
+                final long length = Math.min(rangeSize, size - position);
+                ranges.add(pool.submit(() -> hashRange(channel, start, length, ioWait)));
+            }
+            HashAlgorithm.Hasher root = algorithm.newHasher();
+            root.update(ByteBuffer.allocate(Long.BYTES).putLong(0, rangeSize));
+            try {
+                for (Future<byte[]> range : ranges) {
+                    root.update(ByteBuffer.wrap(range.get()));
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("An error occurred while hashing range", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while hashing ranges");
+            } finally {
+                ranges.forEach(range -> range.cancel(false));
+            }
+            if (metrics != null) {
+                metrics.recordRead(size, ioWait.sum());
+            }
+            return root.digest();
+        }
+    }
+
+    private byte[] hashRange(FileChannel channel, long position, long length, LongAdder ioWait) throws IOException {
+        HashAlgorithm.Hasher hasher = algorithm.newHasher();
+        ByteBuffer buffer = BUFFERS.get();
+        long end = position + length;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            long start = System.nanoTime();
+            int read = channel.read(buffer, position);
+            ioWait.add(System.nanoTime() - start);
+            if (read == -1) {
+                // Range hashes of a shorter file would give a root hash of a file that has never existed
+                throw new IOException("File was truncated while reading");
+            }
+            position += read;
+            buffer.flip();
+            hasher.update(buffer);
+        }
+        return hasher.digest();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,183 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import info.kgeorgiy.ja.garipov.metrics.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Throughput and error counters of a walk.
+ * <p>
+ * Counters are {@link LongAdder}s, so they may be updated from all hashing threads without contention.
+ * They are exposed as {@code info.kgeorgiy.ja.garipov.walk:type=WalkMetrics,name=walk-N} MBean,
+ * with a unique {@code N} for every walk, once {@link #register()} is called.
+ */
+public class WalkMetrics implements WalkMetricsMBean, AutoCloseable {
+    private final static String OBJECT_NAME = "info.kgeorgiy.ja.garipov.walk:type=WalkMetrics,name=walk-";
+    private final static AtomicInteger WALKS = new AtomicInteger();
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder noSuchFileErrors = new LongAdder();
+    private final LongAdder ioErrors = new LongAdder();
+    private final LongAdder invalidPathErrors = new LongAdder();
+    private final LatencyHistogram hashTime = new LatencyHistogram();
+    private final LatencyHistogram ioWait = new LatencyHistogram();
+    private volatile IntSupplier queueDepth = () -> 0;
+    private ObjectName name;
+    private ScheduledExecutorService dumper;
+
+    public void recordFile(long nanos) {
+        files.increment();
+        hashTime.record(nanos);
+    }
+
+    /**
+     * Records bytes of a file read from disk and time spent waiting for them.
+     * Files whose hashes are taken from the index are not read, so they are not recorded.
+     */
+    public void recordRead(long size, long nanos) {
+        bytes.add(size);
+        ioWait.record(nanos);
+    }
+
+    public void recordError(Exception e) {
+        if (e instanceof NoSuchFileException) {
+            noSuchFileErrors.increment();
+        } else if (e instanceof InvalidPathException) {
+            invalidPathErrors.increment();
+        } else {
+            ioErrors.increment();
+        }
+    }
+
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public synchronized void register() throws JMException {
+        if (name == null) {
+            name = new ObjectName(OBJECT_NAME + WALKS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        }
+    }
+
+    public synchronized void startDump(long periodSeconds) {
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> System.err.println("[metrics] " + this), periodSeconds, periodSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    @Override
+    public long getFilesHashed() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytesHashed() {
+        return bytes.sum();
+    }
+
+    private double perSecond(long value) {
+        long elapsed = System.nanoTime() - start;
+        return elapsed == 0 ? 0 : value * 1e9 / elapsed;
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return perSecond(getFilesHashed());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytesHashed());
+    }
+
+    @Override
+    public long getHashTimeMedianMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(hashTime.getPercentile(50));
+    }
+
+    @Override
+    public long getHashTime99PercentileMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(hashTime.getPercentile(99));
+    }
+
+    @Override
+    public long[] getHashTimeHistogram() {
+        return hashTime.getCounts();
+    }
+
+    @Override
+    public long getIoWaitMedianMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(ioWait.getPercentile(50));
+    }
+
+    @Override
+    public long getIoWait99PercentileMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(ioWait.getPercentile(99));
+    }
+
+    @Override
+    public long[] getIoWaitHistogram() {
+        return ioWait.getCounts();
+    }
+
+    @Override
+    public long getNoSuchFileErrors() {
+        return noSuchFileErrors.sum();
+    }
+
+    @Override
+    public long getIoErrors() {
+        return ioErrors.sum();
+    }
+
+    @Override
+    public long getInvalidPathErrors() {
+        return invalidPathErrors.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("files=%d bytes=%d files/s=%.1f bytes/s=%.1f hash p50/p99=%d/%d us "
+                        + "io wait p50/p99=%d/%d us errors: no such file=%d io=%d invalid path=%d queue=%d",
+                getFilesHashed(), getBytesHashed(), getFilesPerSecond(), getBytesPerSecond(),
+                getHashTimeMedianMicros(), getHashTime99PercentileMicros(),
+                getIoWaitMedianMicros(), getIoWait99PercentileMicros(),
+                getNoSuchFileErrors(), getIoErrors(), getInvalidPathErrors(), getQueueDepth());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException ignored) {
+                // already unregistered
+            }
+            name = null;
+        }
+    }
+}
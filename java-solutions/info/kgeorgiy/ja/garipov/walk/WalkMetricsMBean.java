@@ -0,0 +1,31 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+public interface WalkMetricsMBean {
+    long getFilesHashed();
+
+    long getBytesHashed();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+
+    long getHashTimeMedianMicros();
+
+    long getHashTime99PercentileMicros();
+
+    long[] getHashTimeHistogram();
+
+    long getIoWaitMedianMicros();
+
+    long getIoWait99PercentileMicros();
+
+    long[] getIoWaitHistogram();
+
+    long getNoSuchFileErrors();
+
+    long getIoErrors();
+
+    long getInvalidPathErrors();
+
+    int getQueueDepth();
+}
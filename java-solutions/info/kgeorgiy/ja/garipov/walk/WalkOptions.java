@@ -0,0 +1,165 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WalkOptions {
+    private final String input;
+    private final String output;
+    private final int threads;
+    private final String index;
+    private final HashAlgorithm algorithm;
+    private final int traversalThreads;
+    private final long treeRangeSize;
+    private final boolean watch;
+    private final long metricsPeriod;
+
+    private WalkOptions(String input, String output, int threads, String index, HashAlgorithm algorithm,
+                        int traversalThreads, long treeRangeSize, boolean watch, long metricsPeriod) {
+        this.input = input;
+        this.output = output;
+        this.threads = threads;
+        this.index = index;
+        this.algorithm = algorithm;
+        this.traversalThreads = traversalThreads;
+        this.treeRangeSize = treeRangeSize;
+        this.watch = watch;
+        this.metricsPeriod = metricsPeriod;
+    }
+
+    public static WalkOptions parse(String[] args) {
+        return parse(args, HashAlgorithms.DEFAULT);
+    }
+
+    public static WalkOptions parse(String[] args, HashAlgorithm defaultAlgorithm) {
+        if (args == null) {
+            throw new IllegalArgumentException("arguments cannot be null");
+        }
+        List<String> positional = new ArrayList<>();
+        String index = null;
+        HashAlgorithm algorithm = defaultAlgorithm;
+        int traversalThreads = 0;
+        long treeRangeSize = 0;
+        boolean watch = false;
+        long metricsPeriod = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) {
+                throw new IllegalArgumentException("arguments cannot be null");
+            }
+            if ("-index".equals(args[i])) {
+                index = value(args, ++i);
+            } else if ("-algorithm".equals(args[i])) {
+                algorithm = HashAlgorithms.forName(value(args, ++i));
+            } else if ("-traversal".equals(args[i])) {
+                traversalThreads = parseThreads(value(args, ++i));
+            } else if ("-tree".equals(args[i])) {
+                treeRangeSize = parseMegabytes(value(args, ++i));
+            } else if ("-watch".equals(args[i])) {
+                watch = true;
+            } else if ("-metrics".equals(args[i])) {
+                metricsPeriod = parseSeconds(value(args, ++i));
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2 || positional.size() > 3) {
+            throw new IllegalArgumentException("expected: [-index file] [-algorithm name] [-traversal threads] [-tree rangeMiB] [-watch] [-metrics seconds] input output [threads]");
+        }
+        int threads = positional.size() == 3 ? parseThreads(positional.get(2)) : 1;
+        return new WalkOptions(positional.get(0), positional.get(1), threads, index, algorithm, traversalThreads,
+                treeRangeSize, watch, metricsPeriod);
+    }
+
+    private static int parseThreads(String value) {
+        int threads;
+        try {
+            threads = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("threads count should be an integer");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads count should be greater or equal to 1");
+        }
+        return threads;
+    }
+
+    private static long parseMegabytes(String value) {
+        long megabytes;
+        try {
+            megabytes = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("range size should be an integer number of MiB");
+        }
+        if (megabytes < 1 || megabytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("range size should be positive");
+        }
+        return megabytes << 20;
+    }
+
+    private static long parseSeconds(String value) {
+        long seconds;
+        try {
+            seconds = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("metrics period should be an integer number of seconds");
+        }
+        if (seconds < 0) {
+            throw new IllegalArgumentException("metrics period should be non-negative");
+        }
+        return seconds;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length || args[i] == null) {
+            throw new IllegalArgumentException("option " + args[i - 1] + " requires a value");
+        }
+        return args[i];
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getTraversalThreads() {
+        return traversalThreads;
+    }
+
+    /**
+     * Size of ranges for tree hashing in bytes, or {@code 0} if tree hashing is disabled.
+     */
+    public long getTreeRangeSize() {
+        return treeRangeSize;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Period of printing metrics in seconds, {@code 0} to only register metrics MBean
+     * or {@code -1} if metrics are disabled.
+     */
+    public long getMetricsPeriod() {
+        return metricsPeriod;
+    }
+
+    public String getHashFormat() {
+        return treeRangeSize == 0 ? algorithm.getName() : algorithm.getName() + "/" + TreeHasher.MARKER + treeRangeSize;
+    }
+}
@@ -2,60 +2,160 @@ package info.kgeorgiy.ja.garipov.walk;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.Collections;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import javax.management.JMException;
 
 public class Walker {
     public static void walk(String[] args, int depth) {
-        if (args == null || args.length < 2 || (args.length == 2 && (args[0] == null || args[1] == null))) {
-            System.err.println("Invalid arguments format");
-        } else {
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid arguments format : " + e.getMessage());
+            return;
+        }
+        String output = options.getOutput();
+        if (!createOutputDirectory(output)) {
+            return;
+        }
+        if (options.isWatch() && depth == 0) {
+            System.err.println("Invalid arguments format : watch mode requires recursive walk");
+            return;
+        }
+        Path indexFile = null;
+        if (options.getIndex() != null) {
             try {
-                Path path = Path.of(args[1]);
-                if (path.getParent() != null) {
-                    Files.createDirectory(path.getParent());
-                }
-            } catch (FileAlreadyExistsException e) {
-                // ignored
-            } catch (IOException e) {
-                System.err.println("[output error] An error occured while creating directory for output file \"" + args[1] + "\" : " + e);
-                return;
+                indexFile = Path.of(options.getIndex());
             } catch (InvalidPathException e) {
-                System.err.println("[output error] Invalid path for output file \"" + args[1] + "\" : " + e);
+                System.err.println("[index error] Invalid path for index file \"" + options.getIndex() + "\" : " + e);
                 return;
             }
-            final HashWritingFileVisitor fileVisitor = new HashWritingFileVisitor(args[1]);
-            try (BufferedReader reader = Files.newBufferedReader(Path.of(args[0]))) {
-                String filename;
-                while ((filename = reader.readLine()) != null) {
-                    try {
-                        Files.walkFileTree(Path.of(filename), Collections.singleton(FileVisitOption.FOLLOW_LINKS), depth,
-                                fileVisitor);
-                    } catch (InvalidPathException e) {
-                        printOutput(args[1], filename, 0);
-                    } catch (IOException e) {
-                        System.err.println("[process error] An error occurred while walking files " + e);
-                        printOutput(args[1], filename, 0);
-                    }
+        }
+        HashIndex index = loadIndex(options, indexFile);
+        try (WalkMetrics metrics = createMetrics(options);
+             HashPrinter printer = new HashPrinter(output, options.getAlgorithm());
+             TreeHasher treeHasher = options.getTreeRangeSize() == 0
+                     ? null : new TreeHasher(options.getAlgorithm(), options.getTreeRangeSize(),
+                     Runtime.getRuntime().availableProcessors(), metrics)) {
+            if (!options.isWatch()) {
+                walk(options, depth, printer, metrics, (parallelWriter, walkMetrics) ->
+                                new HashWritingFileVisitor(printer, parallelWriter, index, treeHasher, walkMetrics),
+                        index, indexFile);
+                return;
+            }
+            try (FileTreeWatcher watcher = new FileTreeWatcher(printer, index, treeHasher)) {
+                if (walk(options, depth, printer, metrics, watcher::createVisitor, index, indexFile)) {
+                    printer.flush();
+                    watcher.watch(indexFile);
                 }
-            } catch (NoSuchFileException e) {
-                System.err.println("[input error] There is no such file \"" + args[0] + "\" : " + e);
             } catch (IOException e) {
-                System.err.println("[input error] An error occurred while reading from \"" + args[0] + "\" : " + e);
-            } catch (InvalidPathException e) {
-                System.err.println("[input error] Invalid path \"" + args[0] + "\" : " + e);
+                System.err.println("[watch error] Cannot start watch service : " + e);
             }
+        } catch (IOException e) {
+            System.err.println("[output error] An error occurred while opening output file \"" + output + "\" : " + e);
         }
     }
 
-    public static void printOutput(String outputFilename, String file, long hash) {
+    private static WalkMetrics createMetrics(WalkOptions options) {
+        WalkMetrics metrics = new WalkMetrics();
+        if (options.getMetricsPeriod() >= 0) {
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                System.err.println("[metrics error] Cannot register metrics MBean : " + e);
+            }
+            if (options.getMetricsPeriod() > 0) {
+                metrics.startDump(options.getMetricsPeriod());
+            }
+        }
+        return metrics;
+    }
+
+    private static HashIndex loadIndex(WalkOptions options, Path indexFile) {
+        if (indexFile == null) {
+            return options.isWatch() ? HashIndex.empty(null, options.getAlgorithm(), options.getHashFormat()) : null;
+        }
         try {
-            Files.write(Path.of(outputFilename),
-                    Collections.singleton(String.format(HashWritingFileVisitor.stringFormat, hash) + " " + file),
-                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return HashIndex.load(indexFile, options.getAlgorithm(), options.getHashFormat());
+        } catch (IOException e) {
+            System.err.println("[index error] Cannot load index \"" + indexFile + "\", it will be rebuilt : " + e);
+            return HashIndex.empty(indexFile, options.getAlgorithm(), options.getHashFormat());
+        }
+    }
+
+    private static boolean walk(WalkOptions options, int depth, HashPrinter printer, WalkMetrics metrics,
+                                BiFunction<ParallelHashWriter, WalkMetrics, HashWritingFileVisitor> visitorFactory,
+                                HashIndex index, Path indexFile) {
+        boolean completed;
+        try (ParallelHashWriter parallelWriter = options.getThreads() == 1
+                ? null : new ParallelHashWriter(printer, options.getThreads());
+             ParallelFileTreeWalker treeWalker = options.getTraversalThreads() == 0
+                     ? null : new ParallelFileTreeWalker(options.getTraversalThreads())) {
+            if (parallelWriter != null) {
+                metrics.setQueueDepth(parallelWriter::getPending);
+            }
+            HashWritingFileVisitor fileVisitor = visitorFactory.apply(parallelWriter, metrics);
+            completed = walk(options.getInput(), depth, fileVisitor, fileVisitor::writeFailed, treeWalker);
+        }
+        if (indexFile != null && completed) {
+            try {
+                index.save();
+            } catch (IOException e) {
+                System.err.println("[index error] An error occurred while saving index \"" + indexFile + "\" : " + e);
+            }
+        }
+        return completed;
+    }
+
+    static boolean createOutputDirectory(String output) {
+        try {
+            Path path = Path.of(output);
+            if (path.getParent() != null) {
+                Files.createDirectory(path.getParent());
+            }
+        } catch (FileAlreadyExistsException e) {
+            // ignored
+        } catch (IOException e) {
+            System.err.println("[output error] An error occured while creating directory for output file \"" + output + "\" : " + e);
+            return false;
+        } catch (InvalidPathException e) {
+            System.err.println("[output error] Invalid path for output file \"" + output + "\" : " + e);
+            return false;
+        }
+        return true;
+    }
+
+    static boolean walk(String inputFilename, int depth, FileVisitor<Path> fileVisitor,
+                        BiConsumer<String, Exception> failed,
+                        ParallelFileTreeWalker treeWalker) {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(inputFilename))) {
+            String filename;
+            while ((filename = reader.readLine()) != null) {
+                try {
+                    if (treeWalker == null) {
+                        Files.walkFileTree(Path.of(filename), Collections.singleton(FileVisitOption.FOLLOW_LINKS), depth,
+                                fileVisitor);
+                    } else {
+                        treeWalker.walk(Path.of(filename), depth, fileVisitor);
+                    }
+                } catch (InvalidPathException e) {
+                    failed.accept(filename, e);
+                } catch (IOException e) {
+                    System.err.println("[process error] An error occurred while walking files " + e);
+                    failed.accept(filename, e);
+                }
+            }
+            return true;
+        } catch (NoSuchFileException e) {
+            System.err.println("[input error] There is no such file \"" + inputFilename + "\" : " + e);
         } catch (IOException e) {
-            System.err.println("[output error] An error occurred while writing to \"" + outputFilename + "\" : " + e);
+            System.err.println("[input error] An error occurred while reading from \"" + inputFilename + "\" : " + e);
+        } catch (InvalidPathException e) {
+            System.err.println("[input error] Invalid path \"" + inputFilename + "\" : " + e);
         }
+        return false;
     }
 }
@@ -0,0 +1,101 @@
+package info.kgeorgiy.ja.garipov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of 64-bit xxHash with zero seed.
+ */
+public class XxHash64 implements HashAlgorithm.Hasher {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private long v1 = PRIME1 + PRIME2;
+    private long v2 = PRIME2;
+    private long v3 = 0;
+    private long v4 = -PRIME1;
+    private long total;
+    private final ByteBuffer tail = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private void stripe(ByteBuffer buffer, int offset) {
+        v1 = round(v1, buffer.getLong(offset));
+        v2 = round(v2, buffer.getLong(offset + 8));
+        v3 = round(v3, buffer.getLong(offset + 16));
+        v4 = round(v4, buffer.getLong(offset + 24));
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        ByteBuffer input = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        total += input.remaining();
+        buffer.position(buffer.limit());
+        if (tail.position() > 0) {
+            while (tail.hasRemaining() && input.hasRemaining()) {
+                tail.put(input.get());
+            }
+            if (tail.hasRemaining()) {
+                return;
+            }
+            stripe(tail, 0);
+            tail.clear();
+        }
+        int position = input.position();
+        final int limit = input.limit();
+        for (; position + STRIPE <= limit; position += STRIPE) {
+            stripe(input, position);
+        }
+        input.position(position);
+        tail.put(input);
+    }
+
+    @Override
+    public byte[] digest() {
+        long hash;
+        if (total >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += total;
+        final int limit = tail.position();
+        int position = 0;
+        for (; position + Long.BYTES <= limit; position += Long.BYTES) {
+            hash ^= round(0, tail.getLong(position));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (position + Integer.BYTES <= limit) {
+            hash ^= (tail.getInt(position) & 0xFFFF_FFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            position += Integer.BYTES;
+        }
+        for (; position < limit; position++) {
+            hash ^= (tail.get(position) & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return HashAlgorithms.toBytes(hash, Long.BYTES);
+    }
+}
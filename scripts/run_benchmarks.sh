@@ -0,0 +1,17 @@
+#!/bin/bash
+
+# JMH jars (jmh-core, jmh-generator-annprocess and their dependencies) are expected in $JMH_LIB,
+# course artifacts with info.kgeorgiy.java.advanced interfaces in $ARTIFACTS
+jmh_lib=${JMH_LIB:-../../java-advanced-2021/lib}
+artifacts=${ARTIFACTS:-../../java-advanced-2021/artifacts}
+
+mkdir -p benchmarks/classes benchmarks/results 2> /dev/null
+
+javac -d benchmarks/classes -cp "$jmh_lib/*:$artifacts/*" \
+        $(find ../java-solutions/info/kgeorgiy/ja/garipov/walk ../java-solutions/info/kgeorgiy/ja/garipov/concurrent \
+                ../java-solutions/info/kgeorgiy/ja/garipov/metrics \
+                ../java-benchmarks -name "*.java")
+
+# GC profiler reports allocation rate and bytes allocated per operation next to every score
+java -cp "benchmarks/classes:$jmh_lib/*:$artifacts/*" org.openjdk.jmh.Main \
+        -prof gc -rf json -rff benchmarks/results/$(date +%Y%m%d-%H%M%S).json "$@"